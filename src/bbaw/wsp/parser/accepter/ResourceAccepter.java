@@ -1,9 +1,10 @@
 package bbaw.wsp.parser.accepter;
 
-import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.bbaw.wsp.util.EdocDetectionService;
+
 
 
 /**
@@ -78,6 +79,15 @@ public abstract class ResourceAccepter {
 	 * @return true if the resource is accepted
 	 */
 	public boolean acceptLeaf(String uri) {
+		return acceptName(uri);
+	}
+
+	/**
+	 * Check the name of a (leaf-)resource only. The resource isn't accessed, so a harvester which already knows that the resource exists saves a request.
+	 * @param uri - the URL to the (leaf-)resource
+	 * @return true if the resource is accepted
+	 */
+	public boolean acceptName(String uri) {
 		for (String acceptorString : this.acceptedResources) {
 			if(uri.endsWith(acceptorString)) {
 				return true;
@@ -121,12 +131,7 @@ public abstract class ResourceAccepter {
 	 * @return true if the resource is an (KOBV) eDoc.
 	 */
 	public boolean isEDoc(String uri) {
-		File f = new File(uri);		
-	
-		if(f.getParentFile().getName().equals("pdf") && new File(f.getParentFile().getParentFile(), "index.html").exists()) {
-			return true;
-		}
-		return false;
+		return EdocDetectionService.getInstance().isEDoc(uri);
 	}
 	
 }
@@ -0,0 +1,147 @@
+package bbaw.wsp.parser.harvester;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bbaw.wsp.util.EdocDetectionService;
+
+import bbaw.wsp.parser.accepter.FileSystemAccepter;
+import bbaw.wsp.parser.accepter.ResourceAccepter;
+
+/**
+ * This harvester crawls an eDoc repository (OPUS volltexte tree) on the file system. It relies on the fixed layout: [year] / [eDocID] - index.html - /pdf/[eDoc.pdf]
+ *
+ * Only the year and ID folders are listed, all other subtrees are skipped. A folder is an eDoc if its listing contains the index.html and the pdf folder, so a
+ * file isn't accessed on its own. Each eDoc is registered in the {@link EdocDetectionService}, the parsers needn't probe it again.
+ *
+ * The harvest may start at the volltexte folder, a year folder or an eDoc folder.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class EdocHarvester extends Harvester {
+	private static final String INDEX_FILE = "index.html";
+	private static final String PDF_FOLDER = "pdf";
+	// volltexte / [year] / [eDocID]
+	private static final int MAX_DEPTH = 2;
+
+	/**
+	 * Create a new EdocHarvester which accepts the pdf files of the eDocs.
+	 */
+	public EdocHarvester() {
+		this(new FileSystemAccepter(new HashSet<String>(Arrays.asList(ResourceAccepter.EXT_PDF))));
+	}
+
+	/**
+	 * Create a new EdocHarvester.
+	 * @param accepter - the {@link ResourceAccepter} which checks the names of the files in the pdf folders.
+	 */
+	public EdocHarvester(final ResourceAccepter accepter) {
+		super(accepter);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see bbaw.wsp.parser.harvester.Harvester#harvest(java.lang.String)
+	 */
+	public Set<String> harvest(final String startURI) throws IllegalArgumentException {
+		Set<String> leafs = new LinkedHashSet<String>();
+		for(EdocWorkUnit unit : harvestWorkUnits(startURI)) {
+			leafs.addAll(unit.getPdfUris());
+		}
+		return leafs;
+	}
+
+	/**
+	 * Harvest the eDocs of a repository.
+	 * @param startURI - the volltexte folder, a year folder or an eDoc folder.
+	 * @return the {@link EdocWorkUnit}s in the order of the years and IDs.
+	 * @throws IllegalArgumentException if the startURI isn't a directory.
+	 */
+	public List<EdocWorkUnit> harvestWorkUnits(final String startURI) throws IllegalArgumentException {
+		File baseDir = new File(startURI);
+		if(!baseDir.isDirectory()) {
+			throw new IllegalArgumentException("Need a valid directory (node) in EdocHarvester.harvestWorkUnits()!");
+		}
+		List<EdocWorkUnit> units = new ArrayList<EdocWorkUnit>();
+		harvestFolder(baseDir.getAbsoluteFile(), 0, units);
+		return units;
+	}
+
+	private void harvestFolder(final File folder, final int depth, final List<EdocWorkUnit> units) {
+		// the listing is null if the folder is a file or can't be read
+		final String[] names = folder.list();
+		if(names == null) {
+			return;
+		}
+		final List<String> nameList = Arrays.asList(names);
+		if(nameList.contains(INDEX_FILE) && nameList.contains(PDF_FOLDER)) {
+			final EdocWorkUnit unit = createWorkUnit(folder);
+			if(unit != null) {
+				units.add(unit);
+			}
+			return;
+		}
+		if(depth >= MAX_DEPTH) {
+			return;
+		}
+		Arrays.sort(names);
+		for(String name : names) {
+			// years and eDoc IDs are numbers
+			if(isNumber(name)) {
+				harvestFolder(new File(folder, name), depth + 1, units);
+			}
+		}
+	}
+
+	private EdocWorkUnit createWorkUnit(final File eDocFolder) {
+		final File pdfFolder = new File(eDocFolder, PDF_FOLDER);
+		final String[] pdfNames = pdfFolder.list();
+		final String indexUri = new File(eDocFolder, INDEX_FILE).getPath();
+		if(pdfNames == null) {
+			EdocDetectionService.getInstance().register(indexUri, false);
+			return null;
+		}
+		Arrays.sort(pdfNames);
+		final List<String> pdfUris = new ArrayList<String>();
+		for(String pdfName : pdfNames) {
+			final String pdfUri = new File(pdfFolder, pdfName).getPath();
+			if(this.resourceAccepter.acceptName(pdfUri)) {
+				pdfUris.add(pdfUri);
+			}
+		}
+		EdocDetectionService.getInstance().register(indexUri, true);
+		return new EdocWorkUnit(indexUri, pdfUris);
+	}
+
+	private static boolean isNumber(final String name) {
+		if(name.isEmpty()) {
+			return false;
+		}
+		for(int i = 0; i < name.length(); i++) {
+			if(!Character.isDigit(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Test of the EdocHarvester
+	 */
+	public static void main(String[] args) {
+		EdocHarvester harvester = new EdocHarvester();
+		System.out.println("EdocHarvest:");
+		List<EdocWorkUnit> units = harvester.harvestWorkUnits("C:/Dokumente und Einstellungen/wsp-shk1/Eigene Dateien/opus32_bbaw_volltexte_20120607/volltexte/2009/");
+		for(EdocWorkUnit unit : units) {
+			System.out.println(unit);
+		}
+		System.out.println(units.size() + " eDocs");
+		System.out.println("-------------------");
+	}
+}
@@ -0,0 +1,50 @@
+package bbaw.wsp.parser.harvester;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An eDoc found by the {@link EdocHarvester}: its index.html, which contains the metadata, and the pdf files of its pdf folder.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class EdocWorkUnit {
+	private final String indexUri;
+	private final List<String> pdfUris;
+
+	/**
+	 * Create a new EdocWorkUnit.
+	 * @param indexUri - the URI of the eDoc's index.html.
+	 * @param pdfUris - the URIs of the pdf files.
+	 */
+	public EdocWorkUnit(final String indexUri, final List<String> pdfUris) {
+		if(indexUri == null || pdfUris == null) {
+			throw new IllegalArgumentException("The values for the parameters indexUri and pdfUris in EdocWorkUnit mustn't be null.");
+		}
+		this.indexUri = indexUri;
+		this.pdfUris = Collections.unmodifiableList(new ArrayList<String>(pdfUris));
+	}
+
+	/**
+	 *
+	 * @return the URI of the eDoc's index.html.
+	 */
+	public String getIndexUri() {
+		return this.indexUri;
+	}
+
+	/**
+	 *
+	 * @return the URIs of the pdf files. The list is read-only.
+	 */
+	public List<String> getPdfUris() {
+		return this.pdfUris;
+	}
+
+	@Override
+	public String toString() {
+		return "EdocWorkUnit [indexUri=" + indexUri + ", pdfUris=" + pdfUris + "]";
+	}
+}
@@ -0,0 +1,96 @@
+package bbaw.wsp.parser.harvester;
+
+/**
+ * A change of a harvested resource since the last run of an {@link IncrementalFileSystemHarvester}.
+ * A deleted resource is a tombstone: the downstream index has to remove it.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class HarvestChange {
+
+	/**
+	 * The kind of change.
+	 */
+	public enum Type {
+		/**
+		 * The resource is new.
+		 */
+		ADDED,
+		/**
+		 * The size or the modification time of the resource changed.
+		 */
+		MODIFIED,
+		/**
+		 * The resource was deleted.
+		 */
+		DELETED
+	}
+
+	private final Type type;
+	private final String uri;
+	private final long size;
+	private final long lastModified;
+
+	/**
+	 * Create a new HarvestChange.
+	 * @param type - the {@link Type} of change.
+	 * @param uri - the resource's URI.
+	 * @param size - the size in bytes, the last known one for a deleted resource.
+	 * @param lastModified - the modification time in milliseconds, the last known one for a deleted resource.
+	 */
+	public HarvestChange(final Type type, final String uri, final long size, final long lastModified) {
+		if(type == null || uri == null) {
+			throw new IllegalArgumentException("The values for the parameters type and uri in HarvestChange mustn't be null.");
+		}
+		this.type = type;
+		this.uri = uri;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 *
+	 * @return the {@link Type} of change.
+	 */
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 *
+	 * @return the resource's URI.
+	 */
+	public String getUri() {
+		return this.uri;
+	}
+
+	/**
+	 *
+	 * @return the size in bytes.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return the modification time in milliseconds.
+	 */
+	public long getLastModified() {
+		return this.lastModified;
+	}
+
+	/**
+	 *
+	 * @return true if the resource was deleted.
+	 */
+	public boolean isTombstone() {
+		return this.type == Type.DELETED;
+	}
+
+	@Override
+	public String toString() {
+		return "HarvestChange [type=" + type + ", uri=" + uri + ", size=" + size + ", lastModified=" + lastModified + "]";
+	}
+}
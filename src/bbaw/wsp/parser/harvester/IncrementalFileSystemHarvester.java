@@ -0,0 +1,234 @@
+package bbaw.wsp.parser.harvester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import bbaw.wsp.parser.accepter.FileSystemAccepter;
+import bbaw.wsp.parser.accepter.ResourceAccepter;
+
+/**
+ * This harvester crawls a file system incrementally. It keeps a manifest of the path, the size and the modification time of each accepted file from the last run
+ * and returns only the files which were added, modified or deleted since.
+ *
+ * The tree is walked by {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}: the size and the modification time are read with the directory listing,
+ * so a file isn't accessed on its own. The manifest is a gzipped binary file.
+ *
+ * Usage: call {@link #harvestChanges(String)}, process the changes and call {@link #saveManifest()}. If the process stops before, the changes are returned again
+ * on the next run.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class IncrementalFileSystemHarvester extends FileSystemHarvester {
+	private static final int MANIFEST_MAGIC = 0x5753504d; // "WSPM"
+	private static final int MANIFEST_VERSION = 1;
+	private static final int BUFFER_SIZE = 65536;
+
+	private final File manifestFile;
+	private Map<String, ManifestEntry> manifest;
+
+	/**
+	 * Create a new IncrementalFileSystemHarvester. The manifest of the last run is loaded if the file exists.
+	 * @param accepter - the {@link ResourceAccepter}.
+	 * @param manifestFile - the {@link File} of the manifest.
+	 * @throws IOException if the existing manifest can't be read.
+	 */
+	public IncrementalFileSystemHarvester(final ResourceAccepter accepter, final File manifestFile) throws IOException {
+		super(accepter);
+		if(manifestFile == null) {
+			throw new IllegalArgumentException("The value for the parameter manifestFile in IncrementalFileSystemHarvester mustn't be null.");
+		}
+		this.manifestFile = manifestFile;
+		this.manifest = manifestFile.isFile() ? loadManifest(manifestFile) : new HashMap<String, ManifestEntry>();
+	}
+
+	/**
+	 * Harvest the changes of a directory since the last run. The manifest is updated in the heap, call {@link #saveManifest()} to keep it.
+	 *
+	 * Files below a directory which can't be read (e.g. a share which isn't mounted) aren't reported as deleted: they keep their former manifest entries.
+	 * @param startURI - the directory to begin the harvest.
+	 * @return the {@link HarvestChange}s: new and modified files in the order of the walk, then the deleted ones (tombstones).
+	 * @throws IllegalArgumentException if the startURI isn't a directory.
+	 * @throws IOException if the directory can't be walked.
+	 */
+	public synchronized List<HarvestChange> harvestChanges(final String startURI) throws IllegalArgumentException, IOException {
+		final File baseDir = new File(startURI);
+		if(!baseDir.exists()) {
+			throw new IllegalArgumentException("Can't find base directory in IncrementalFileSystemHarvester.harvestChanges()!");
+		}
+		else if(!baseDir.isDirectory()) {
+			throw new IllegalArgumentException("Need a valid directory (node), not a file (leaf) in IncrementalFileSystemHarvester.harvestChanges()!");
+		}
+
+		final Map<String, ManifestEntry> previous = this.manifest;
+		final Map<String, ManifestEntry> current = new HashMap<String, ManifestEntry>(Math.max(16, previous.size() * 4 / 3));
+		final List<HarvestChange> changes = new ArrayList<HarvestChange>();
+		final Set<String> failedPaths = new HashSet<String>();
+
+		Files.walkFileTree(baseDir.getAbsoluteFile().toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+				final String path = file.toString();
+				if(!attrs.isRegularFile() || !resourceAccepter.acceptName(path)) {
+					return FileVisitResult.CONTINUE;
+				}
+				final ManifestEntry entry = new ManifestEntry(attrs.size(), attrs.lastModifiedTime().toMillis());
+				current.put(path, entry);
+				final ManifestEntry former = previous.get(path);
+				if(former == null) {
+					changes.add(new HarvestChange(HarvestChange.Type.ADDED, path, entry.size, entry.lastModified));
+				}
+				else if(former.size != entry.size || former.lastModified != entry.lastModified) {
+					changes.add(new HarvestChange(HarvestChange.Type.MODIFIED, path, entry.size, entry.lastModified));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+				failedPaths.add(file.toString());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) {
+				if(exc != null) {
+					failedPaths.add(dir.toString());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		// entries which weren't visited: deleted, below a failed directory or outside of this harvest
+		final String basePath = baseDir.getAbsoluteFile().toPath().toString();
+		for(Map.Entry<String, ManifestEntry> formerEntry : previous.entrySet()) {
+			final String path = formerEntry.getKey();
+			if(current.containsKey(path)) {
+				continue;
+			}
+			if(!isBelow(path, basePath) || isBelowAny(path, failedPaths)) {
+				current.put(path, formerEntry.getValue());
+			}
+			else {
+				changes.add(new HarvestChange(HarvestChange.Type.DELETED, path, formerEntry.getValue().size, formerEntry.getValue().lastModified));
+			}
+		}
+		this.manifest = current;
+		return changes;
+	}
+
+	/**
+	 * Save the manifest of the last harvest. The file is replaced at once, a crash while saving keeps the former manifest.
+	 * @throws IOException if the manifest can't be written.
+	 */
+	public synchronized void saveManifest() throws IOException {
+		final File tempFile = new File(this.manifestFile.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE), BUFFER_SIZE));
+		try {
+			out.writeInt(MANIFEST_MAGIC);
+			out.writeInt(MANIFEST_VERSION);
+			out.writeInt(this.manifest.size());
+			for(Map.Entry<String, ManifestEntry> entry : this.manifest.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().size);
+				out.writeLong(entry.getValue().lastModified);
+			}
+		}
+		finally {
+			out.close();
+		}
+		Files.move(tempFile.toPath(), this.manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Get the number of files in the manifest.
+	 * @return the number of files.
+	 */
+	public synchronized int getManifestSize() {
+		return this.manifest.size();
+	}
+
+	private static Map<String, ManifestEntry> loadManifest(final File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+		try {
+			if(in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+				throw new IOException("The file " + file + " isn't a manifest of the IncrementalFileSystemHarvester.");
+			}
+			final int count = in.readInt();
+			final Map<String, ManifestEntry> entries = new HashMap<String, ManifestEntry>(Math.max(16, count * 4 / 3));
+			for(int i = 0; i < count; i++) {
+				final String path = in.readUTF();
+				entries.put(path, new ManifestEntry(in.readLong(), in.readLong()));
+			}
+			return entries;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static boolean isBelow(final String path, final String dir) {
+		return path.startsWith(dir) && (path.length() == dir.length() || dir.endsWith(File.separator) || path.startsWith(File.separator, dir.length()));
+	}
+
+	private static boolean isBelowAny(final String path, final Set<String> dirs) {
+		for(String dir : dirs) {
+			if(isBelow(path, dir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class ManifestEntry {
+		private final long size;
+		private final long lastModified;
+
+		ManifestEntry(final long size, final long lastModified) {
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/*
+	 * Test of the IncrementalFileSystemHarvester
+	 */
+	public static void main(String[] args) {
+		Set<String> acceptedResources = new HashSet<String>();
+		acceptedResources.add(".pdf");
+		ResourceAccepter accepter = new FileSystemAccepter(acceptedResources);
+		try {
+			IncrementalFileSystemHarvester harvester = new IncrementalFileSystemHarvester(accepter, new File("wsp-web-test.manifest"));
+			System.out.println("IncrementalFileSystemHarvest:");
+			List<HarvestChange> changes = harvester.harvestChanges("//192.168.1.203/wsp-web-test");
+			for(HarvestChange change : changes) {
+				System.out.println(change);
+			}
+			harvester.saveManifest();
+			System.out.println(changes.size() + " changes, " + harvester.getManifestSize() + " files in the manifest");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("-------------------");
+	}
+}
@@ -0,0 +1,136 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class holds a text as UTF-8 or deflate-compressed UTF-8 byte array. The
+ * text is decoded on each call of {@link #decode()}, the String isn't kept.
+ * Instances are immutable.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public final class CompressedText {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final TextEncoding encoding;
+  private final byte[] bytes;
+  private final int utf8Length;
+  private final int length;
+
+  private CompressedText(final TextEncoding encoding, final byte[] bytes, final int utf8Length, final int length) {
+    this.encoding = encoding;
+    this.bytes = bytes;
+    this.utf8Length = utf8Length;
+    this.length = length;
+  }
+
+  /**
+   * Encode a text.
+   * 
+   * @param text
+   *          - the text.
+   * @param encoding
+   *          - {@link TextEncoding#UTF8} or {@link TextEncoding#DEFLATE}.
+   * @return the {@link CompressedText}
+   * @throws IllegalArgumentException
+   *           if the text is null or the encoding isn't a byte encoding.
+   */
+  public static CompressedText encode(final String text, final TextEncoding encoding) {
+    if (text == null) {
+      throw new IllegalArgumentException("The value for the parameter text in CompressedText.encode() mustn't be null.");
+    }
+    final byte[] utf8 = text.getBytes(UTF8);
+    if (encoding == TextEncoding.UTF8) {
+      return new CompressedText(encoding, utf8, utf8.length, text.length());
+    }
+    if (encoding == TextEncoding.DEFLATE) {
+      return new CompressedText(encoding, deflate(utf8), utf8.length, text.length());
+    }
+    throw new IllegalArgumentException("The value for the parameter encoding in CompressedText.encode() must be UTF8 or DEFLATE.");
+  }
+
+  /**
+   * 
+   * @return the decoded text.
+   */
+  public String decode() {
+    if (this.encoding == TextEncoding.DEFLATE) {
+      return new String(inflate(this.bytes, this.utf8Length), UTF8);
+    }
+    return new String(this.bytes, UTF8);
+  }
+
+  /**
+   * 
+   * @return the {@link TextEncoding}
+   */
+  public TextEncoding getEncoding() {
+    return this.encoding;
+  }
+
+  /**
+   * 
+   * @return the number of characters of the decoded text.
+   */
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * 
+   * @return the number of bytes which are kept.
+   */
+  public int getByteCount() {
+    return this.bytes.length;
+  }
+
+  private static byte[] deflate(final byte[] input) {
+    final Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+      final byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(final byte[] input, final int outputLength) {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      final byte[] output = new byte[outputLength];
+      int offset = 0;
+      while (offset < outputLength && !inflater.finished()) {
+        final int count = inflater.inflate(output, offset, outputLength - offset);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        offset += count;
+      }
+      if (offset != outputLength) {
+        throw new IllegalStateException("The compressed text is truncated: " + offset + " of " + outputLength + " bytes were decoded.");
+      }
+      return output;
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("The compressed text is corrupt: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedText [encoding=" + encoding + ", length=" + length + ", bytes=" + bytes.length + "]";
+  }
+}
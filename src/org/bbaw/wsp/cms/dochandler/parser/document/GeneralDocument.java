@@ -3,6 +3,10 @@
  */
 package org.bbaw.wsp.cms.dochandler.parser.document;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
 import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 
 /**
@@ -19,8 +23,11 @@ import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 public class GeneralDocument implements IDocument {
 
   private String textOrig;
+  private CompressedText compressedText;
+  private SpilledText spilledText;
   private String url;
   protected MetadataRecord metadata;
+  private String truncationReason;
 
   /**
    * Create a new GeneralDocument model class.
@@ -44,15 +51,174 @@ public class GeneralDocument implements IDocument {
     this.textOrig = fulltext;
   }
 
+  /**
+   * Create a new GeneralDocument model class which keeps the fulltext in the
+   * given {@link TextEncoding}.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param fulltext
+   *          - the parsed fulltext.
+   * @param encoding
+   *          - the {@link TextEncoding}
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null.
+   */
+  public GeneralDocument(final String url, final String fulltext, final TextEncoding encoding) {
+    this(url, fulltext);
+    this.compact(encoding);
+  }
+
+  /**
+   * Create a new GeneralDocument model class on a text which was spilled to a
+   * temporary file. Use {@link #getText()} or {@link #openTextReader()} to
+   * read it without copying it to the heap.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param fulltext
+   *          - the {@link SpilledText}.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null.
+   */
+  public GeneralDocument(final String url, final SpilledText fulltext) {
+    this(url);
+    if (fulltext == null) {
+      throw new IllegalArgumentException("The value for the parameter fulltext in GeneralDocument mustn't be null.");
+    }
+    this.spilledText = fulltext;
+  }
+
+  /**
+   * Create a new GeneralDocument model class for subclasses which keep the
+   * fulltext on their own. Those must override {@link #getTextOrig()}.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @throws IllegalArgumentException
+   *           if the url is null.
+   */
+  protected GeneralDocument(final String url) {
+    if (url == null) {
+      throw new IllegalArgumentException("The value for the parameter URL in GeneralDocument mustn't be null.");
+    }
+
+    this.url = url;
+  }
+
   /*
    * (non-Javadoc)
    * 
    * @see bbaw.wsp.parser.fulltext.document.IDocument#getFulltext()
    */
   public String getTextOrig() {
+    if (this.spilledText != null) {
+      return this.getText().toString();
+    }
+    if (this.compressedText != null) {
+      return this.compressedText.decode();
+    }
     return this.textOrig;
   }
 
+  /**
+   * Return the fulltext as {@link CharSequence}. A spilled text is mapped from
+   * its temporary file and isn't copied to the heap.
+   * 
+   * @return the fulltext.
+   * @throws IllegalStateException
+   *           if the spilled text can't get read.
+   */
+  public CharSequence getText() {
+    if (this.spilledText != null) {
+      try {
+        return this.spilledText.getCharSequence();
+      } catch (IOException e) {
+        throw new IllegalStateException("Problem while reading the text of " + this.url + "  -- exception: " + e.getMessage());
+      }
+    }
+    return this.getTextOrig();
+  }
+
+  /**
+   * Open a {@link Reader} on the fulltext. The caller must close it.
+   * 
+   * @return the {@link Reader}
+   * @throws IllegalStateException
+   *           if the spilled text can't get read.
+   */
+  public Reader openTextReader() {
+    if (this.spilledText != null) {
+      try {
+        return this.spilledText.openReader();
+      } catch (IOException e) {
+        throw new IllegalStateException("Problem while reading the text of " + this.url + "  -- exception: " + e.getMessage());
+      }
+    }
+    return new StringReader(this.getTextOrig());
+  }
+
+  /**
+   * 
+   * @return true if the fulltext was spilled to a temporary file.
+   */
+  public boolean isSpilled() {
+    return this.spilledText != null;
+  }
+
+  /**
+   * Delete the temporary file of a spilled text. The text mustn't be used
+   * afterwards. Documents which are kept in memory aren't affected.
+   * 
+   * The caller of a parse method owns the returned document and should call
+   * this method when he's done. If he doesn't, the file is deleted after the
+   * document was garbage collected, see {@link SpilledText}.
+   */
+  public void dispose() {
+    if (this.spilledText != null) {
+      this.spilledText.delete();
+    }
+  }
+
+  /**
+   * Change the in-memory representation of the fulltext. A byte encoding
+   * decodes the text on each call of {@link #getTextOrig()}, so callers should
+   * keep the returned String as long as they need it.
+   * 
+   * @param encoding
+   *          - the {@link TextEncoding}
+   * @throws IllegalArgumentException
+   *           if the encoding is null.
+   */
+  public void compact(final TextEncoding encoding) {
+    if (encoding == null) {
+      throw new IllegalArgumentException("The value for the parameter encoding in GeneralDocument.compact() mustn't be null.");
+    }
+    if (encoding == this.getTextEncoding() || this.spilledText != null) {
+      // a spilled text stays on the disk
+      return;
+    }
+    final String text = this.getTextOrig();
+    if (encoding == TextEncoding.PLAIN) {
+      this.textOrig = text;
+      this.compressedText = null;
+    } else {
+      this.compressedText = CompressedText.encode(text, encoding);
+      this.textOrig = null;
+    }
+  }
+
+  /**
+   * 
+   * @return the {@link TextEncoding} of the fulltext.
+   */
+  public TextEncoding getTextEncoding() {
+    if (this.compressedText != null) {
+      return this.compressedText.getEncoding();
+    }
+    return TextEncoding.PLAIN;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -68,7 +234,7 @@ public class GeneralDocument implements IDocument {
    * @see java.lang.Object#toString()
    */
   public String toString() {
-    return "GeneralDocument [fulltext=" + textOrig + ", url=" + url + "]";
+    return "GeneralDocument [fulltext=" + (spilledText != null ? spilledText : getTextOrig()) + ", url=" + url + "]";
   }
 
   public MetadataRecord getMetadata() {
@@ -82,4 +248,19 @@ public class GeneralDocument implements IDocument {
     this.metadata = metadata;
   }
 
+  public String getTruncationReason() {
+    return this.truncationReason;
+  }
+
+  /**
+   * Mark the document as partial.
+   * 
+   * @param truncationReason
+   *          - the reason why the parser stopped before the end of the
+   *          document.
+   */
+  public void setTruncationReason(final String truncationReason) {
+    this.truncationReason = truncationReason;
+  }
+
 }
@@ -41,4 +41,13 @@ public interface IDocument {
    *          the {@link MetadataRecord}.
    */
   void setMetadata(final MetadataRecord metadata);
+
+  /**
+   * Fetch the reason why the parser stopped before the end of the document,
+   * e.g. because it exceeded its time, page or character budget.
+   * 
+   * @return the reason. May return null if the document was parsed
+   *         completely.
+   */
+  String getTruncationReason();
 }
@@ -0,0 +1,24 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This interface gives access to the text of single pages of a document which
+ * is extracted on demand. It's used by the {@link LazyPdfDocument}.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public interface IPageTextSource {
+
+  /**
+   * Extract the text of a page.
+   * 
+   * @param pageNumber
+   *          - the number of the page. Counting starts at 1 !
+   * @return the page's fulltext. Never returns null.
+   * @throws ApplicationException
+   *           if the page can't get extracted.
+   */
+  String extractPageText(final int pageNumber) throws ApplicationException;
+}
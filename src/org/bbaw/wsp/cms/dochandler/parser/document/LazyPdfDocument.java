@@ -0,0 +1,118 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This {@link PdfDocument} extracts the text of a page when it's accessed for
+ * the first time. Consumers which only need a few pages (e.g. for previews)
+ * don't pay for the extraction of the whole document.
+ * 
+ * The extracted pages are kept by the document.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class LazyPdfDocument extends PdfDocument {
+
+  private final IPageTextSource source;
+  private final String[] pageTexts;
+
+  /**
+   * Create a new LazyPdfDocument.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param pageCount
+   *          - the number of pages.
+   * @param source
+   *          - the {@link IPageTextSource} which extracts the pages.
+   * @throws IllegalArgumentException
+   *           if the source is null or the pageCount is negative.
+   */
+  public LazyPdfDocument(final String url, final int pageCount, final IPageTextSource source) {
+    super(url);
+
+    if (source == null) {
+      throw new IllegalArgumentException("The value for the parameter source in LazyPdfDocument mustn't be null.");
+    }
+    if (pageCount < 0) {
+      throw new IllegalArgumentException("The value for the parameter pageCount in LazyPdfDocument mustn't be negative.");
+    }
+    this.source = source;
+    this.pageTexts = new String[pageCount];
+  }
+
+  @Override
+  public int getPageCount() {
+    return this.pageTexts.length;
+  }
+
+  /**
+   * Return the fulltext of a page. It's extracted on the first call.
+   * 
+   * @throws IllegalStateException
+   *           if the page can't get extracted.
+   */
+  @Override
+  public String getPageText(final int pageNumber) {
+    this.checkPageNumber(pageNumber);
+    synchronized (this.pageTexts) {
+      if (this.pageTexts[pageNumber - 1] == null) {
+        try {
+          this.pageTexts[pageNumber - 1] = this.source.extractPageText(pageNumber);
+        } catch (ApplicationException e) {
+          throw new IllegalStateException("The page " + pageNumber + " of " + this.getURL() + " can't get extracted: " + e.getMessage(), e);
+        }
+      }
+      return this.pageTexts[pageNumber - 1];
+    }
+  }
+
+  /**
+   * Return the number of the page which contains a character of the text. All
+   * pages up to that page will be extracted.
+   */
+  @Override
+  public int getPageNumber(final int offset) {
+    if (offset >= 0) {
+      int pageStart = 0;
+      for (int i = 1; i <= this.getPageCount(); i++) {
+        pageStart += this.getPageText(i).length();
+        if (offset < pageStart) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalArgumentException("The offset " + offset + " in LazyPdfDocument.getPageNumber() is out of range.");
+  }
+
+  /**
+   * Check if a page was extracted already.
+   * 
+   * @param pageNumber
+   *          - the number of the page. Counting starts at 1 !
+   * @return true if the page was extracted already.
+   */
+  public boolean isExtracted(final int pageNumber) {
+    this.checkPageNumber(pageNumber);
+    synchronized (this.pageTexts) {
+      return this.pageTexts[pageNumber - 1] != null;
+    }
+  }
+
+  /**
+   * Lazy documents aren't compacted, because that would extract all pages.
+   * The extracted pages are kept as Strings.
+   */
+  @Override
+  public void compact(final TextEncoding encoding) {
+    if (encoding == null) {
+      throw new IllegalArgumentException("The value for the parameter encoding in LazyPdfDocument.compact() mustn't be null.");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LazyPdfDocument [pageCount=" + getPageCount() + ", metadata=" + metadata + "]";
+  }
+}
@@ -0,0 +1,78 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class realizes an {@link IDocument} and saves the data for a parsed
+ * OpenDocument text. The fulltext contains the footnotes at the place of their
+ * citation, they're offered on their own as well.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class OdfDocument extends GeneralDocument {
+  /**
+   * The mime type of an OpenDocument text.
+   */
+  public static final String MIME_TYPE = "application/vnd.oasis.opendocument.text";
+
+  private final SortedMap<Integer, String> footnotes;
+
+  /**
+   * Create a new OdfDocument model.
+   *
+   * @param url
+   *          - URL of the parsed document.
+   * @param fulltext
+   *          - the parsed fulltext.
+   * @param footnotes
+   *          - the footnotes by the number of their citation.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null.
+   */
+  public OdfDocument(final String url, final String fulltext, final SortedMap<Integer, String> footnotes) {
+    super(url, fulltext);
+    this.footnotes = copyFootnotes(footnotes);
+  }
+
+  /**
+   * Create a new OdfDocument model on a text which was spilled to a temporary
+   * file.
+   *
+   * @param url
+   *          - URL of the parsed document.
+   * @param fulltext
+   *          - the {@link SpilledText}.
+   * @param footnotes
+   *          - the footnotes by the number of their citation.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null.
+   */
+  public OdfDocument(final String url, final SpilledText fulltext, final SortedMap<Integer, String> footnotes) {
+    super(url, fulltext);
+    this.footnotes = copyFootnotes(footnotes);
+  }
+
+  private static SortedMap<Integer, String> copyFootnotes(final SortedMap<Integer, String> footnotes) {
+    if (footnotes == null) {
+      throw new IllegalArgumentException("The value for the parameter footnotes in OdfDocument mustn't be null.");
+    }
+    return Collections.unmodifiableSortedMap(new TreeMap<Integer, String>(footnotes));
+  }
+
+  /**
+   *
+   * @return the footnotes by the number of their citation. The map is
+   *         read-only.
+   */
+  public SortedMap<Integer, String> getFootnotes() {
+    return this.footnotes;
+  }
+
+  @Override
+  public String toString() {
+    return "OdfDocument [url=" + getURL() + ", footnotes=" + this.footnotes.size() + ", metadata=" + metadata + "]";
+  }
+}
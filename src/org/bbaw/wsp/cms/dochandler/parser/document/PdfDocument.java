@@ -3,39 +3,55 @@
  */
 package org.bbaw.wsp.cms.dochandler.parser.document;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
 import java.util.List;
 
 import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 
 /**
  * This class realizes an {@link IDocument} and saves the data for a parsed PDF
- * file.
+ * file. The text of all pages is kept in one character buffer. An int array
+ * holds the offset of each page within that buffer, so a {@link PdfPage} is
+ * only a view on the buffer. If the document is compacted, each page is kept
+ * as {@link CompressedText} instead and the buffer is dropped. The text of
+ * very large documents may be a {@link SpilledText} which is mapped from a
+ * temporary file.
  * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 16.08.2012
  * 
  */
 public class PdfDocument extends GeneralDocument {
-  private static String MIME_TYPE = "application/pdf";
-  private static String SCHEME_NAME = "pdf";
+  /**
+   * The mime type of a PDF document.
+   */
+  public static final String MIME_TYPE = "application/pdf";
+  /**
+   * The schema name of a PDF document.
+   */
+  public static final String SCHEME_NAME = "pdf";
 
-  private List<PdfPage> pages;
+  private char[] text;
+  private int[] pageOffsets;
+  private CompressedText[] compressedPages;
+  private SpilledText spilledText;
+  private CharSequence spilledChars;
+  private TextEncoding textEncoding = TextEncoding.PLAIN;
 
   /**
    * Create a new PDFDocument model.
    * 
    * @param url
    *          - URL of the parsed document.
-   * @param fulltext
-   *          - the parsed fulltext.
    * @param textPages
    *          - the pages as list of Strings.
    * @throws IllegalArgumentException
    *           if one of the parameters is null.
    */
-  public PdfDocument(final String url, final String fulltext, final List<String> textPages) {
-    super(url, fulltext);
+  public PdfDocument(final String url, final List<String> textPages) {
+    super(url);
 
     if (textPages == null) {
       throw new IllegalArgumentException("The value for the parameter textPages in PDFDocument mustn't be null.");
@@ -44,12 +60,218 @@ public class PdfDocument extends GeneralDocument {
     this.createPages(textPages);
   }
 
+  /**
+   * Create a new PDFDocument model on a character buffer.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param text
+   *          - the text of all pages without any separator.
+   * @param pageOffsets
+   *          - the offset of each page within the text. The array contains one
+   *          more element than there are pages: the last one is the length of
+   *          the text.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null or the offsets don't fit the
+   *           text.
+   */
+  public PdfDocument(final String url, final char[] text, final int[] pageOffsets) {
+    super(url);
+
+    if (text == null) {
+      throw new IllegalArgumentException("The value for the parameter text in PDFDocument mustn't be null.");
+    }
+    if (pageOffsets == null || pageOffsets.length == 0 || pageOffsets[0] != 0 || pageOffsets[pageOffsets.length - 1] != text.length) {
+      throw new IllegalArgumentException("The value for the parameter pageOffsets in PDFDocument doesn't fit the text.");
+    }
+
+    this.text = text;
+    this.pageOffsets = pageOffsets;
+  }
+
+  /**
+   * Create a new PDFDocument model which keeps the page texts in the given
+   * {@link TextEncoding}.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param text
+   *          - the text of all pages without any separator.
+   * @param pageOffsets
+   *          - the offset of each page within the text, see
+   *          {@link #PdfDocument(String, char[], int[])}.
+   * @param encoding
+   *          - the {@link TextEncoding}
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null or the offsets don't fit the
+   *           text.
+   */
+  public PdfDocument(final String url, final char[] text, final int[] pageOffsets, final TextEncoding encoding) {
+    this(url, text, pageOffsets);
+    this.compact(encoding);
+  }
+
+  /**
+   * Create a new PDFDocument model on a text which was spilled to a temporary
+   * file. The pages are read from the mapped file when they are accessed.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   * @param text
+   *          - the {@link SpilledText} of all pages without any separator.
+   * @param pageOffsets
+   *          - the offset of each page within the text, see
+   *          {@link #PdfDocument(String, char[], int[])}.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null or the offsets don't fit the
+   *           text.
+   * @throws IllegalStateException
+   *           if the file can't get mapped.
+   */
+  public PdfDocument(final String url, final SpilledText text, final int[] pageOffsets) {
+    super(url);
+
+    if (text == null) {
+      throw new IllegalArgumentException("The value for the parameter text in PDFDocument mustn't be null.");
+    }
+    if (pageOffsets == null || pageOffsets.length == 0 || pageOffsets[0] != 0 || pageOffsets[pageOffsets.length - 1] != text.length()) {
+      throw new IllegalArgumentException("The value for the parameter pageOffsets in PDFDocument doesn't fit the text.");
+    }
+
+    try {
+      this.spilledChars = text.getCharSequence();
+    } catch (IOException e) {
+      throw new IllegalStateException("Problem while reading the text of " + url + "  -- exception: " + e.getMessage());
+    }
+    this.spilledText = text;
+    this.pageOffsets = pageOffsets;
+  }
+
+  /**
+   * Create a new PDFDocument model for subclasses which keep the page texts on
+   * their own. Those must override {@link #getPageCount()},
+   * {@link #getPageText(int)} and {@link #getPageNumber(int)}.
+   * 
+   * @param url
+   *          - URL of the parsed document.
+   */
+  protected PdfDocument(final String url) {
+    super(url);
+  }
+
   private void createPages(List<String> textPages) {
-    this.pages = new ArrayList<PdfPage>();
+    int length = 0;
+    for (String pageText : textPages) {
+      length += pageText.length();
+    }
+    this.text = new char[length];
+    this.pageOffsets = new int[textPages.size() + 1];
 
+    int offset = 0;
     for (int i = 0; i < textPages.size(); i++) {
-      this.pages.add(new PdfPage(i + 1, textPages.get(i)));
+      final String pageText = textPages.get(i);
+      pageText.getChars(0, pageText.length(), this.text, offset);
+      this.pageOffsets[i] = offset;
+      offset += pageText.length();
+    }
+    this.pageOffsets[textPages.size()] = offset;
+  }
+
+  /**
+   * Return the fulltext. Each page is introduced by a marker "[page=i]". The
+   * String is built on each call and isn't kept by the document.
+   */
+  @Override
+  public String getTextOrig() {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 1; i <= this.getPageCount(); i++) {
+      builder.append("[page=").append(i).append("]\n");
+      builder.append(this.getPageText(i));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Return the fulltext with the page markers of {@link #getTextOrig()} as
+   * {@link CharSequence}. A spilled text is read from the mapped file, the
+   * markers are inserted on access, so the text isn't copied to the heap.
+   */
+  @Override
+  public CharSequence getText() {
+    if (this.spilledChars != null) {
+      return new MarkedText(this.spilledChars, this.pageOffsets);
+    }
+    return super.getText();
+  }
+
+  /**
+   * Open a {@link Reader} on the fulltext with the page markers of
+   * {@link #getTextOrig()}. A spilled text is read from the mapped file.
+   */
+  @Override
+  public Reader openTextReader() {
+    if (this.spilledChars != null) {
+      return new CharSequenceReader(this.getText());
+    }
+    return super.openTextReader();
+  }
+
+  /**
+   * 
+   * @return the number of pages.
+   */
+  public int getPageCount() {
+    return this.pageOffsets.length - 1;
+  }
+
+  /**
+   * Return the fulltext of a page.
+   * 
+   * @param pageNumber
+   *          - the number of the page. Counting starts at 1 !
+   * @return the page's fulltext.
+   * @throws IllegalArgumentException
+   *           if the pageNumber is out of range.
+   */
+  public String getPageText(final int pageNumber) {
+    this.checkPageNumber(pageNumber);
+    if (this.compressedPages != null) {
+      return this.compressedPages[pageNumber - 1].decode();
+    }
+    final int start = this.pageOffsets[pageNumber - 1];
+    if (this.spilledChars != null) {
+      return this.spilledChars.subSequence(start, this.pageOffsets[pageNumber]).toString();
     }
+    return new String(this.text, start, this.pageOffsets[pageNumber] - start);
+  }
+
+  /**
+   * Return the number of the page which contains a character of the text.
+   * 
+   * @param offset
+   *          - the offset of the character within the text of all pages
+   *          (without page markers).
+   * @return the page number. Counting starts at 1 !
+   * @throws IllegalArgumentException
+   *           if the offset is out of range.
+   */
+  public int getPageNumber(final int offset) {
+    final int length = this.pageOffsets[this.getPageCount()];
+    if (offset < 0 || offset >= length) {
+      throw new IllegalArgumentException("The offset " + offset + " in PDFDocument.getPageNumber() is out of range. The text has only " + length + " characters.");
+    }
+    // binary search for the last page which starts at or before the offset
+    int low = 0;
+    int high = this.getPageCount() - 1;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (this.pageOffsets[mid] <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low + 1;
   }
 
   /**
@@ -62,19 +284,97 @@ public class PdfDocument extends GeneralDocument {
    *           if the pageNumber is out of range.
    */
   public PdfPage getPage(final int pageNumber) {
-    if (pageNumber < 1 || pageNumber > this.pages.size()) {
-      throw new IllegalArgumentException("The page number " + pageNumber + " in PDFDocument.getPage() is out of range. Only " + this.pages.size() + "exist");
-    }
-    return pages.get(pageNumber - 1);
+    this.checkPageNumber(pageNumber);
+    return new PdfPage(this, pageNumber);
   }
 
   /**
-   * Returns the whole list of PDFPages.
+   * Returns the whole list of PDFPages. The list is a read-only view, the
+   * pages are created on access.
    * 
    * @return the list of {@link PdfPage}.
    */
   public List<PdfPage> getPages() {
-    return this.pages;
+    return new AbstractList<PdfPage>() {
+
+      @Override
+      public PdfPage get(final int index) {
+        return getPage(index + 1);
+      }
+
+      @Override
+      public int size() {
+        return getPageCount();
+      }
+    };
+  }
+
+  /**
+   * Change the in-memory representation of the page texts. A byte encoding
+   * keeps each page as {@link CompressedText}, so a page is decoded on its own
+   * when it's accessed.
+   * 
+   * @param encoding
+   *          - the {@link TextEncoding}
+   * @throws IllegalArgumentException
+   *           if the encoding is null.
+   */
+  @Override
+  public void compact(final TextEncoding encoding) {
+    if (encoding == null) {
+      throw new IllegalArgumentException("The value for the parameter encoding in PDFDocument.compact() mustn't be null.");
+    }
+    if (encoding == this.getTextEncoding() || this.spilledText != null) {
+      // a spilled text stays on the disk
+      return;
+    }
+    final int pageCount = this.getPageCount();
+    if (encoding == TextEncoding.PLAIN) {
+      final char[] plainText = new char[this.pageOffsets[pageCount]];
+      for (int i = 0; i < pageCount; i++) {
+        final String pageText = this.compressedPages[i].decode();
+        pageText.getChars(0, pageText.length(), plainText, this.pageOffsets[i]);
+      }
+      this.text = plainText;
+      this.compressedPages = null;
+      this.textEncoding = encoding;
+    } else {
+      final CompressedText[] pages = new CompressedText[pageCount];
+      for (int i = 0; i < pageCount; i++) {
+        pages[i] = CompressedText.encode(this.getPageText(i + 1), encoding);
+      }
+      this.compressedPages = pages;
+      this.text = null;
+      this.textEncoding = encoding;
+    }
+  }
+
+  /**
+   * 
+   * @return the {@link TextEncoding} of the page texts.
+   */
+  @Override
+  public TextEncoding getTextEncoding() {
+    return this.textEncoding;
+  }
+
+  @Override
+  public boolean isSpilled() {
+    return this.spilledText != null;
+  }
+
+  @Override
+  public void dispose() {
+    if (this.spilledText != null) {
+      this.spilledChars = null;
+      this.spilledText.delete();
+    }
+  }
+
+  protected void checkPageNumber(final int pageNumber) {
+    if (pageNumber < 1 || pageNumber > this.getPageCount()) {
+      throw new IllegalArgumentException("The page number " + pageNumber + " in PDFDocument.getPage() is out of range. Only " + this.getPageCount() + "exist");
+    }
   }
 
   /**
@@ -87,7 +387,7 @@ public class PdfDocument extends GeneralDocument {
   public void setMetadata(final MetadataRecord metadata) {
     // Set the "standard" PDF attributes
     if (metadata.getPageCount() == 0) {
-      metadata.setPageCount(this.pages.size());
+      metadata.setPageCount(this.getPageCount());
     }
     if (metadata.getSchemaName() == null) {
       metadata.setSchemaName(SCHEME_NAME);
@@ -101,6 +401,106 @@ public class PdfDocument extends GeneralDocument {
 
   @Override
   public String toString() {
-    return "PDFDocument [pages=" + pages + ", metadata=" + metadata + "]";
+    return "PDFDocument [pages=" + getPages() + ", metadata=" + metadata + "]";
+  }
+
+  /*
+   * A view on the text of all pages which inserts the marker "[page=i]\n"
+   * before each page.
+   */
+  private static class MarkedText implements CharSequence {
+    private final CharSequence pages;
+    private final int[] pageOffsets;
+    // the offset of each page's marker within the view
+    private final int[] markerOffsets;
+
+    MarkedText(final CharSequence pages, final int[] pageOffsets) {
+      this.pages = pages;
+      this.pageOffsets = pageOffsets;
+      final int pageCount = pageOffsets.length - 1;
+      this.markerOffsets = new int[pageCount + 1];
+      int offset = 0;
+      for (int i = 0; i < pageCount; i++) {
+        this.markerOffsets[i] = offset;
+        offset += marker(i + 1).length() + pageOffsets[i + 1] - pageOffsets[i];
+      }
+      this.markerOffsets[pageCount] = offset;
+    }
+
+    public int length() {
+      return this.markerOffsets[this.markerOffsets.length - 1];
+    }
+
+    public char charAt(final int index) {
+      if (index < 0 || index >= this.length()) {
+        throw new IndexOutOfBoundsException("The index " + index + " is out of range. The text has only " + this.length() + " characters.");
+      }
+      // binary search for the last page which starts at or before the index
+      int low = 0;
+      int high = this.markerOffsets.length - 2;
+      while (low < high) {
+        final int mid = (low + high + 1) >>> 1;
+        if (this.markerOffsets[mid] <= index) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      final String marker = marker(low + 1);
+      final int position = index - this.markerOffsets[low];
+      if (position < marker.length()) {
+        return marker.charAt(position);
+      }
+      return this.pages.charAt(this.pageOffsets[low] + position - marker.length());
+    }
+
+    public CharSequence subSequence(final int start, final int end) {
+      if (start < 0 || end > this.length() || start > end) {
+        throw new IndexOutOfBoundsException("The range " + start + "-" + end + " is out of range. The text has only " + this.length() + " characters.");
+      }
+      final StringBuilder builder = new StringBuilder(end - start);
+      for (int i = start; i < end; i++) {
+        builder.append(this.charAt(i));
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+      return this.subSequence(0, this.length()).toString();
+    }
+
+    private static String marker(final int pageNumber) {
+      return "[page=" + pageNumber + "]\n";
+    }
+  }
+
+  /*
+   * A Reader on a CharSequence.
+   */
+  private static class CharSequenceReader extends Reader {
+    private final CharSequence text;
+    private int position;
+
+    CharSequenceReader(final CharSequence text) {
+      this.text = text;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) {
+      if (this.position >= this.text.length()) {
+        return -1;
+      }
+      final int count = Math.min(len, this.text.length() - this.position);
+      for (int i = 0; i < count; i++) {
+        cbuf[off + i] = this.text.charAt(this.position++);
+      }
+      return count;
+    }
+
+    @Override
+    public void close() {
+      // nothing to release, the mapping belongs to the document
+    }
   }
 }
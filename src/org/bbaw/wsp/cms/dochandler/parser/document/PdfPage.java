@@ -2,7 +2,8 @@ package org.bbaw.wsp.cms.dochandler.parser.document;
 
 /**
  * This class realizes an {@link IDocument} and saves the data for a special PDF
- * page. It's part of an {@link PdfDocument}.
+ * page. It's part of an {@link PdfDocument}. A page of a {@link PdfDocument} is
+ * a lightweight view which reads its text from the document's buffer.
  * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 08.08.2012
@@ -12,6 +13,8 @@ public class PdfPage {
 
   private int pageNumber;
   private String textOrig;
+  private CompressedText compressedText;
+  private PdfDocument document;
 
   /**
    * Create a new PDFPage.
@@ -29,6 +32,41 @@ public class PdfPage {
     this.textOrig = fulltext;
   }
 
+  /**
+   * Create a new PDFPage which keeps its fulltext in the given
+   * {@link TextEncoding}.
+   * 
+   * @param pageNumber
+   *          - the page number.
+   * @param fulltext
+   *          - the page's (parsed) fulltext.
+   * @param encoding
+   *          - the {@link TextEncoding}
+   */
+  public PdfPage(final int pageNumber, final String fulltext, final TextEncoding encoding) {
+    this(pageNumber, fulltext);
+    if (encoding == null) {
+      throw new IllegalArgumentException("The value for the parameter encoding in PDFPage mustn't be null.");
+    }
+    if (encoding != TextEncoding.PLAIN) {
+      this.compressedText = CompressedText.encode(fulltext, encoding);
+      this.textOrig = null;
+    }
+  }
+
+  /**
+   * Create a new PDFPage as view on a {@link PdfDocument}.
+   * 
+   * @param document
+   *          - the {@link PdfDocument} which holds the text.
+   * @param pageNumber
+   *          - the page number.
+   */
+  PdfPage(final PdfDocument document, final int pageNumber) {
+    this.pageNumber = pageNumber;
+    this.document = document;
+  }
+
   /**
    * 
    * @return the page number.
@@ -42,12 +80,18 @@ public class PdfPage {
    * @return the fulltext.
    */
   public String getTextOrig() {
+    if (this.compressedText != null) {
+      return this.compressedText.decode();
+    }
+    if (this.textOrig == null) {
+      return this.document.getPageText(this.pageNumber);
+    }
     return this.textOrig;
   }
 
   @Override
   public String toString() {
-    return "PDFPage [pageNumber=" + pageNumber + ", fulltext=" + textOrig + "]";
+    return "PDFPage [pageNumber=" + pageNumber + ", fulltext=" + getTextOrig() + "]";
   }
 
 }
@@ -0,0 +1,152 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class gives access to a text which was spilled to a temporary file by a
+ * {@link SpillingTextWriter}. The file is mapped into memory, so the text
+ * doesn't occupy the heap.
+ * 
+ * The owner of the text deletes the file by {@link #delete()}, see
+ * {@link GeneralDocument#dispose()}. The file of a text which is garbage
+ * collected without that is deleted when the next text is spilled, so
+ * forgotten files don't pile up in long runs.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class SpilledText {
+  /**
+   * The maximum number of characters: the mapped file mustn't exceed 2 GB.
+   */
+  public static final long MAX_LENGTH = Integer.MAX_VALUE / 2;
+  private static final Charset UTF16BE = Charset.forName("UTF-16BE");
+  private static final ReferenceQueue<SpilledText> UNREACHABLE = new ReferenceQueue<SpilledText>();
+  // keeps the references reachable until their texts are collected
+  private static final Set<FileReference> REFERENCES = Collections.synchronizedSet(new HashSet<FileReference>());
+
+  private final File file;
+  private final int length;
+  private final FileReference reference;
+  private CharBuffer mappedText;
+
+  /**
+   * Create a new SpilledText.
+   * 
+   * @param file
+   *          - the file which holds the characters as UTF-16BE.
+   * @param length
+   *          - the number of characters.
+   * @throws IOException
+   *           if the text is too long to get mapped.
+   */
+  SpilledText(final File file, final long length) throws IOException {
+    if (length > MAX_LENGTH) {
+      throw new IOException("The text in " + file + " is too long to get mapped: " + length + " characters.");
+    }
+    this.file = file;
+    this.length = (int) length;
+    this.reference = new FileReference(this, file);
+    REFERENCES.add(this.reference);
+  }
+
+  /**
+   * 
+   * @return the number of characters.
+   */
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * Return the text as {@link CharSequence}. The file is mapped on the first
+   * call.
+   * 
+   * @return the text. It's read-only.
+   * @throws IOException
+   *           if the file can't get mapped.
+   */
+  public synchronized CharSequence getCharSequence() throws IOException {
+    if (this.mappedText == null) {
+      final RandomAccessFile input = new RandomAccessFile(this.file, "r");
+      try {
+        // the mapping stays valid when the channel is closed
+        this.mappedText = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, 2L * this.length).asCharBuffer();
+      } finally {
+        input.close();
+      }
+    }
+    return this.mappedText.duplicate();
+  }
+
+  /**
+   * Open a {@link Reader} on the text. The caller must close it.
+   * 
+   * @return the {@link Reader}
+   * @throws IOException
+   *           if the file can't get opened.
+   */
+  public Reader openReader() throws IOException {
+    return new InputStreamReader(new BufferedInputStream(new FileInputStream(this.file)), UTF16BE);
+  }
+
+  /**
+   * Delete the temporary file. The text mustn't be used afterwards.
+   */
+  public synchronized void delete() {
+    this.mappedText = null;
+    REFERENCES.remove(this.reference);
+    this.reference.clear();
+    delete(this.file);
+  }
+
+  /**
+   * Delete the files of the texts which were garbage collected without
+   * {@link #delete()}.
+   */
+  static void deleteUnreachable() {
+    Reference<? extends SpilledText> reference;
+    while ((reference = UNREACHABLE.poll()) != null) {
+      final FileReference fileReference = (FileReference) reference;
+      REFERENCES.remove(fileReference);
+      delete(fileReference.file);
+    }
+  }
+
+  static void delete(final File file) {
+    // a mapped file can't be deleted on some platforms until the mapping is
+    // garbage collected
+    if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SpilledText [file=" + file + ", length=" + length + "]";
+  }
+
+  private static class FileReference extends PhantomReference<SpilledText> {
+    private final File file;
+
+    FileReference(final SpilledText text, final File file) {
+      super(text, UNREACHABLE);
+      this.file = file;
+    }
+  }
+}
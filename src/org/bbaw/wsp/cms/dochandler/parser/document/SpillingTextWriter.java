@@ -0,0 +1,224 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * This writer collects a text in memory up to a threshold. If the text grows
+ * beyond the threshold, it's spilled to a temporary file and all further
+ * characters are appended to the file. The file holds the characters as
+ * UTF-16BE, so a {@link SpilledText} can map it as CharSequence.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class SpillingTextWriter extends Writer {
+  /**
+   * Default number of characters which are kept in memory (32 MB).
+   */
+  public static final int DEFAULT_THRESHOLD = 16 * 1024 * 1024;
+
+  private static final String TEMP_PREFIX = "wsp-text";
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final int threshold;
+  private StringBuilder memory = new StringBuilder();
+  private File spillFile;
+  private OutputStream spillOutput;
+  private byte[] byteBuffer;
+  private int byteCount;
+  private long length;
+  private boolean closed;
+
+  /**
+   * Create a new SpillingTextWriter.
+   * 
+   * @param threshold
+   *          - the number of characters which are kept in memory.
+   * @throws IllegalArgumentException
+   *           if the threshold is negative.
+   */
+  public SpillingTextWriter(final int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("The value for the parameter threshold in SpillingTextWriter mustn't be negative.");
+    }
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void write(final char[] cbuf, final int off, final int len) throws IOException {
+    if (this.closed) {
+      throw new IOException("The SpillingTextWriter is closed.");
+    }
+    if (this.length + len > SpilledText.MAX_LENGTH) {
+      // checked before anything is written, the text couldn't get mapped
+      throw new IOException("The text is too long: more than " + SpilledText.MAX_LENGTH + " characters.");
+    }
+    if (this.memory != null && this.memory.length() + (long) len > this.threshold) {
+      this.spill();
+    }
+    if (this.memory != null) {
+      this.memory.append(cbuf, off, len);
+    } else {
+      for (int i = off; i < off + len; i++) {
+        if (this.byteCount + 2 > this.byteBuffer.length) {
+          this.flushBytes();
+        }
+        final char c = cbuf[i];
+        this.byteBuffer[this.byteCount++] = (byte) (c >>> 8);
+        this.byteBuffer[this.byteCount++] = (byte) c;
+      }
+    }
+    this.length += len;
+  }
+
+  /**
+   * Append the text of a {@link CharSequence}.
+   * 
+   * @param text
+   *          - the text.
+   * @throws IOException
+   *           if the text can't get spilled.
+   */
+  public void write(final CharSequence text) throws IOException {
+    final char[] chunk = new char[Math.min(text.length(), BUFFER_SIZE)];
+    for (int start = 0; start < text.length(); start += chunk.length) {
+      final int end = Math.min(start + chunk.length, text.length());
+      if (text instanceof String) {
+        ((String) text).getChars(start, end, chunk, 0);
+      } else {
+        for (int i = start; i < end; i++) {
+          chunk[i - start] = text.charAt(i);
+        }
+      }
+      this.write(chunk, 0, end - start);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (this.spillOutput != null) {
+      this.flushBytes();
+      this.spillOutput.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      if (this.spillOutput != null) {
+        try {
+          this.flushBytes();
+        } finally {
+          this.spillOutput.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * 
+   * @return the number of characters written so far.
+   */
+  public long length() {
+    return this.length;
+  }
+
+  /**
+   * 
+   * @return true if the text was spilled to a temporary file.
+   */
+  public boolean isSpilled() {
+    return this.memory == null;
+  }
+
+  /**
+   * Return the text which was kept in memory.
+   * 
+   * @return the text.
+   * @throws IllegalStateException
+   *           if the text was spilled.
+   */
+  @Override
+  public String toString() {
+    if (this.memory == null) {
+      throw new IllegalStateException("The text was spilled to the file " + this.spillFile + ". Use toSpilledText().");
+    }
+    return this.memory.toString();
+  }
+
+  /**
+   * Return the text which was kept in memory as character array.
+   * 
+   * @return a copy of the text.
+   * @throws IllegalStateException
+   *           if the text was spilled.
+   */
+  public char[] toCharArray() {
+    if (this.memory == null) {
+      throw new IllegalStateException("The text was spilled to the file " + this.spillFile + ". Use toSpilledText().");
+    }
+    final char[] chars = new char[this.memory.length()];
+    this.memory.getChars(0, chars.length, chars, 0);
+    return chars;
+  }
+
+  /**
+   * Close the writer and return the spilled text. The caller owns the
+   * temporary file from now on, see {@link SpilledText#delete()}.
+   * 
+   * @return the {@link SpilledText}
+   * @throws IOException
+   *           if the file can't get written.
+   * @throws IllegalStateException
+   *           if the text wasn't spilled.
+   */
+  public SpilledText toSpilledText() throws IOException {
+    if (this.memory != null) {
+      throw new IllegalStateException("The text wasn't spilled. Use toString().");
+    }
+    this.close();
+    return new SpilledText(this.spillFile, this.length);
+  }
+
+  /**
+   * Close the writer and delete the temporary file. Errors are ignored.
+   */
+  public void discard() {
+    try {
+      this.close();
+    } catch (IOException e) {
+      // ignore
+    }
+    if (this.spillFile != null) {
+      SpilledText.delete(this.spillFile);
+    }
+  }
+
+  private void spill() throws IOException {
+    SpilledText.deleteUnreachable();
+    this.spillFile = File.createTempFile(TEMP_PREFIX, ".utf16");
+    this.spillOutput = new FileOutputStream(this.spillFile);
+    this.byteBuffer = new byte[BUFFER_SIZE];
+    final StringBuilder text = this.memory;
+    this.memory = null;
+    this.length = 0;
+    final char[] chunk = new char[BUFFER_SIZE / 2];
+    for (int start = 0; start < text.length(); start += chunk.length) {
+      final int end = Math.min(start + chunk.length, text.length());
+      text.getChars(start, end, chunk, 0);
+      this.write(chunk, 0, end - start);
+    }
+  }
+
+  private void flushBytes() throws IOException {
+    if (this.byteCount > 0) {
+      this.spillOutput.write(this.byteBuffer, 0, this.byteCount);
+      this.byteCount = 0;
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package org.bbaw.wsp.cms.dochandler.parser.document;
+
+/**
+ * The in-memory representation of a document's text.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public enum TextEncoding {
+  /**
+   * The text is kept as String (two bytes per character).
+   */
+  PLAIN,
+  /**
+   * The text is kept as UTF-8 byte array (one byte per Latin character).
+   */
+  UTF8,
+  /**
+   * The text is kept as deflate-compressed UTF-8 byte array.
+   */
+  DEFLATE
+}
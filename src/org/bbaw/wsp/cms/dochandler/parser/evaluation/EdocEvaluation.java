@@ -1,16 +1,13 @@
 package org.bbaw.wsp.cms.dochandler.parser.evaluation;
 
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Set;
 
-import org.bbaw.wsp.cms.dochandler.parser.document.PdfDocument;
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.ParserRegistry;
+import org.bbaw.wsp.util.EdocDetectionService;
 
-import bbaw.wsp.parser.accepter.FileSystemAccepter;
-import bbaw.wsp.parser.accepter.ResourceAccepter;
-import bbaw.wsp.parser.accepter.WebAccepter;
-import bbaw.wsp.parser.harvester.FileSystemHarvester;
-import bbaw.wsp.parser.harvester.WebHarvester;
+import bbaw.wsp.parser.harvester.EdocHarvester;
 
 public class EdocEvaluation {
 
@@ -21,76 +18,70 @@ public class EdocEvaluation {
    * @param args
    */
   public static void main(String[] args) {
-    Set<String> acceptedResources = new HashSet<String>();
-    acceptedResources.add(ResourceAccepter.EXT_PDF);
-    FulltextParserExcecution ex = new FulltextParserExcecution(new FileSystemHarvester(new FileSystemAccepter(acceptedResources)));
+    // the eDocs are found by their folder layout, each eDoc folder is listed
+    // once
+    FulltextParserExcecution ex = new FulltextParserExcecution(new EdocHarvester());
     
     long startTime = new Date().getTime();
-    Set<Object> results = ex.parse(EDOC_START_URI);
+    // only the metadata is evaluated, so the text isn't extracted
+    Set<MetadataRecord> results = ex.parseMetadata(EDOC_START_URI);
     long runningTime = new Date().getTime() - startTime;
     System.out.println("Testlauf:");
     System.out.println("Anzahl der eDocs: "+results.size()+"\n\n\n");
-    for (Object result : results) {
-      PdfDocument pdf = (PdfDocument) result;
-      System.out.println("URI: " + pdf.getURL());
-      System.out.println("Metadata: \n"+ pdf.getMetadata());
+    for (MetadataRecord metadata : results) {
+      System.out.println("URI: " + metadata.getUri());
+      System.out.println("Metadata: \n"+ metadata);
       System.out.println("---------------\n\n");
     }
     
     
     System.out.println("#######################");
     System.out.println("Benötigte Zeit: "+runningTime+" ms.");    
+    ParserRegistry registry = ParserRegistry.getInstance();
+    System.out.println("Parser-Abfragen: "+registry.getLookupCount()+", erzeugte Parser: "+registry.getAllocationCount());
+    System.out.println("eDoc-Prüfungen auf dem Dateisystem: "+EdocDetectionService.getInstance().getProbeCount());
     System.out.println("Null-Felder: \n\n");
     System.out.println("Subject: \n");
     int counter = 0;
-    for (Object result : results) {      
-      PdfDocument pdf = (PdfDocument) result;
-      if(pdf.getMetadata().getSubject() == null) {
-        System.out.println(pdf.getURL());
+    for (MetadataRecord metadata : results) {
+      if(metadata.getSubject() == null) {
+        System.out.println(metadata.getUri());
         counter++;
       }
     }
     System.out.println("("+counter+")++++++");
     counter = 0;
     System.out.println("SWD: \n");
-    for (Object result : results) {
-      
-      PdfDocument pdf = (PdfDocument) result;
-      if(pdf.getMetadata().getSwd() == null) {
-        System.out.println(pdf.getURL());
+    for (MetadataRecord metadata : results) {
+      if(metadata.getSwd() == null) {
+        System.out.println(metadata.getUri());
         counter++;
       }
     }
     System.out.println("("+counter+")++++++");
     counter = 0;
     System.out.println("Publisher: \n");
-    for (Object result : results) {
-     
-      PdfDocument pdf = (PdfDocument) result;
-      if(pdf.getMetadata().getPublisher() == null) {
-        System.out.println(pdf.getURL());
+    for (MetadataRecord metadata : results) {
+      if(metadata.getPublisher() == null) {
+        System.out.println(metadata.getUri());
         counter++;
       }
     }
     System.out.println("("+counter+")++++++");
     counter = 0;
     System.out.println("collectionNames: \n");
-    for (Object result : results) {
-     
-      PdfDocument pdf = (PdfDocument) result;
-      if(pdf.getMetadata().getCollectionNames() == null) {
-        System.out.println(pdf.getURL());
+    for (MetadataRecord metadata : results) {
+      if(metadata.getCollectionNames() == null) {
+        System.out.println(metadata.getUri());
         counter++;
       }
     }
     System.out.println("("+counter+")++++++");
     counter = 0;
     System.out.println("documentType: \n");
-    for (Object result : results) {
-      
-      PdfDocument pdf = (PdfDocument) result;
-      if(pdf.getMetadata().getDocumentType() == null) {
-        System.out.println(pdf.getURL());
+    for (MetadataRecord metadata : results) {
+      if(metadata.getDocumentType() == null) {
+        System.out.println(metadata.getUri());
         counter++;
       }
     }
@@ -0,0 +1,227 @@
+package org.bbaw.wsp.cms.dochandler.parser.evaluation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+import org.bbaw.wsp.util.EdocFrontdoorTokenizer;
+
+/**
+ * Evaluation of the metadata extraction from the eDoc frontdoor pages. The
+ * former regex passes of the EdocIndexMetadataFetcherTool are compared to the
+ * single pass of the {@link EdocFrontdoorTokenizer}. The pages are read into
+ * the heap before, so only the extraction is measured. Use a volltexte tree
+ * with a few thousand eDocs.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class FrontdoorEvaluation {
+
+  private static final String EDOC_ROOT = "C:/Dokumente und Einstellungen/wsp-shk1/Eigene Dateien/opus32_bbaw_volltexte_20120607/volltexte/";
+  private static final int RUNS = 5;
+
+  /**
+   * Evaluation of the frontdoor extraction.
+   *
+   * @param args
+   *          - optional: the path to the volltexte folder and the number of
+   *          runs.
+   */
+  public static void main(String[] args) throws IOException {
+    final File root = new File(args.length > 0 ? args[0] : EDOC_ROOT);
+    final int runs = args.length > 1 ? Integer.parseInt(args[1]) : RUNS;
+
+    final List<byte[]> pages = readIndexPages(root);
+    System.out.println("Testlauf: " + root + " (" + pages.size() + " Frontdoor-Seiten, " + runs + " Durchläufe)");
+
+    // warm up both variants
+    List<MetadataRecord> regexRecords = extractByRegex(pages);
+    List<MetadataRecord> tokenizerRecords = extractByTokenizer(pages);
+
+    long regexTime = 0;
+    long tokenizerTime = 0;
+    for (int run = 0; run < runs; run++) {
+      long startTime = new Date().getTime();
+      regexRecords = extractByRegex(pages);
+      regexTime += new Date().getTime() - startTime;
+
+      startTime = new Date().getTime();
+      tokenizerRecords = extractByTokenizer(pages);
+      tokenizerTime += new Date().getTime() - startTime;
+    }
+
+    System.out.println("Regex (drei Durchläufe pro Seite): " + (regexTime / runs) + " ms.");
+    System.out.println("Ein Durchlauf (EdocFrontdoorTokenizer): " + (tokenizerTime / runs) + " ms.");
+
+    int differences = 0;
+    for (int i = 0; i < pages.size(); i++) {
+      final String regexFields = toFields(regexRecords.get(i));
+      final String tokenizerFields = toFields(tokenizerRecords.get(i));
+      if (!regexFields.equals(tokenizerFields)) {
+        if (differences < 10) {
+          System.out.println("Abweichung:\n  Regex:     " + regexFields + "\n  Tokenizer: " + tokenizerFields);
+        }
+        differences++;
+      }
+    }
+    System.out.println("Seiten mit abweichenden Feldern: " + differences);
+  }
+
+  /*
+   * The volltexte tree: [year] / [eDocID] / index.html
+   */
+  private static List<byte[]> readIndexPages(final File root) throws IOException {
+    final List<byte[]> pages = new ArrayList<byte[]>();
+    final File[] years = root.listFiles();
+    if (years == null) {
+      throw new IOException("The folder " + root + " can't be read.");
+    }
+    for (File year : years) {
+      final File[] eDocs = year.listFiles();
+      if (eDocs == null) {
+        continue;
+      }
+      for (File eDoc : eDocs) {
+        final File index = new File(eDoc, "index.html");
+        if (index.isFile()) {
+          pages.add(readFully(index));
+        }
+      }
+    }
+    return pages;
+  }
+
+  private static byte[] readFully(final File file) throws IOException {
+    final byte[] content = new byte[(int) file.length()];
+    final InputStream in = new FileInputStream(file);
+    try {
+      int offset = 0;
+      int count;
+      while (offset < content.length && (count = in.read(content, offset, content.length - offset)) != -1) {
+        offset += count;
+      }
+    } finally {
+      in.close();
+    }
+    return content;
+  }
+
+  private static List<MetadataRecord> extractByTokenizer(final List<byte[]> pages) {
+    final List<MetadataRecord> records = new ArrayList<MetadataRecord>();
+    for (byte[] page : pages) {
+      records.add(EdocFrontdoorTokenizer.parse(page, new MetadataRecord()));
+    }
+    return records;
+  }
+
+  private static List<MetadataRecord> extractByRegex(final List<byte[]> pages) {
+    final List<MetadataRecord> records = new ArrayList<MetadataRecord>();
+    for (byte[] page : pages) {
+      records.add(fetchHtmlByRegex(page, new MetadataRecord()));
+    }
+    return records;
+  }
+
+  private static String toFields(final MetadataRecord record) {
+    return "title=" + record.getTitle() + ", creator=" + record.getCreator() + ", uri=" + record.getUri() + ", urn=" + record.getUrn() + ", swd=" + record.getSwd() + ", subject=" + record.getSubject() + ", ddc=" + record.getDdc() + ", language=" + record.getLanguage() + ", documentType=" + record.getDocumentType() + ", isbn=" + record.getIsbn() + ", publisher=" + record.getPublisher() + ", collectionNames=" + record.getCollectionNames() + ", realDocUrl=" + record.getRealDocUrl();
+  }
+
+  /*
+   * The former EdocIndexMetadataFetcherTool.fetchHtmlDirectly(): the page is
+   * concatenated to one String and searched three times, the patterns are
+   * compiled on each call.
+   */
+  private static MetadataRecord fetchHtmlByRegex(final byte[] index, final MetadataRecord mdRecord) {
+    String line = new String(index, Charset.defaultCharset()).replace("\n", "");
+    StringBuilder creatorBuilder = new StringBuilder();
+    Pattern p = Pattern.compile("(?i)<META NAME=\"(.*?)\" CONTENT=\"(.*?)\">(?i)");
+    for (Matcher m = p.matcher(line); m.find();) {
+      String tag = m.group(1);
+      String content = m.group(2);
+      if (tag.equals("DC.Date.Creation_of_intellectual_content")) {
+        Calendar cal = new GregorianCalendar();
+        cal.set(Calendar.YEAR, Integer.parseInt(content));
+        cal.set(Calendar.DAY_OF_YEAR, 1);
+        cal.set(Calendar.HOUR, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        mdRecord.setCreationDate(cal.getTime());
+      } else if (tag.equals("DC.Title")) {
+        mdRecord.setTitle(content);
+      } else if (tag.equals("DC.Creator")) {
+        if (creatorBuilder.toString().length() == 0) {
+          creatorBuilder.append(content);
+        } else {
+          creatorBuilder.append(" ; " + content);
+        }
+        mdRecord.setCreator(creatorBuilder.toString());
+      } else if (tag.equals("DC.Subject")) {
+        mdRecord.setSwd(content);
+      } else if (tag.equals("DC.Description")) {
+        mdRecord.setDescription(content);
+      } else if (tag.equals("DC.Identifier")) {
+        if (content.contains("http://")) {
+          mdRecord.setUri(content);
+        } else if (content.contains("urn:")) {
+          mdRecord.setUrn(content);
+        }
+      }
+    }
+
+    Pattern p2 = Pattern.compile("(?i)<TD class=\"frontdoor\" valign=\"top\"><B>(.*?)</B></TD>.*?<TD class=\"frontdoor\" valign=\"top\">(.*?)</TD><");
+    for (Matcher m = p2.matcher(line); m.find();) {
+      String key = m.group(1);
+      String value = m.group(2).trim();
+      if (key.contains("pdf-Format")) {
+        Pattern pLink = Pattern.compile("(?i)<a href=\"(.*?)(\".*?)\">.*?</a>");
+        Matcher mLink = pLink.matcher(key);
+        if (mLink.find()) {
+          mdRecord.setRealDocUrl(mLink.group(1));
+        }
+      } else if (key.contains("Freie Schlagwörter")) {
+        mdRecord.setSubject(value);
+      } else if (key.contains("DDC-Sachgruppe")) {
+        mdRecord.setDdc(value);
+      } else if (key.contains("Sprache")) {
+        mdRecord.setLanguage(value);
+      } else if (key.contains("Dokumentart")) {
+        mdRecord.setDocumentType(value);
+      } else if (key.contains("Publikationsdatum")) {
+        final int day = Integer.parseInt(value.substring(0, value.indexOf(".")));
+        final int month = Integer.parseInt(value.substring(value.indexOf(".") + 1, value.lastIndexOf(".")));
+        final int year = Integer.parseInt(value.substring(value.lastIndexOf(".") + 1));
+
+        Calendar cal = new GregorianCalendar();
+        cal.set(year, month, day);
+        mdRecord.setPublishingDate(cal.getTime());
+      } else if (key.contains("ISBN")) {
+        mdRecord.setIsbn(value);
+      } else if (key.contains("Institut")) {
+        mdRecord.setPublisher(value);
+      } else if (key.contains("Collection")) {
+        Pattern pColl = Pattern.compile("(?i)<a.*?>(.*?)</a>");
+        Matcher mColl = pColl.matcher(value);
+        if (mColl.find()) {
+          mdRecord.setCollectionNames(mColl.group(1));
+        }
+      }
+    }
+    Pattern p3 = Pattern.compile("(?i)<TD class=\"frontdoor\" valign=\"top\"><B>Institut:</B></TD>.*?<TD class=\"frontdoor\" valign=\"top\">(.*?)</TD><");
+    for (Matcher m = p3.matcher(line); m.find();) {
+      mdRecord.setPublisher(m.group(1));
+    }
+    return mdRecord;
+  }
+}
@@ -1,10 +1,19 @@
 package org.bbaw.wsp.cms.dochandler.parser.evaluation;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.bbaw.wsp.cms.dochandler.parser.document.GeneralDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.TextEncoding;
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 import org.bbaw.wsp.cms.dochandler.parser.text.parser.DocumentModelStrategy;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.DocumentParser;
 import org.bbaw.wsp.cms.dochandler.parser.text.parser.EdocParserImpl;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.ParseBudget;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.ParseResult;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.ParseWatchdog;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.ParserRegistry;
 import org.bbaw.wsp.cms.dochandler.parser.text.parser.ResourceParser;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
@@ -27,6 +36,9 @@ public class FulltextParserExcecution {
 
   private Harvester harvester;
   private DocumentModelStrategy saveStrategy;
+  private ParseBudget parseBudget = ParseBudget.UNLIMITED;
+  private ParseWatchdog watchdog = new ParseWatchdog();
+  private TextEncoding textEncoding = TextEncoding.PLAIN;
 
   /**
    * Create a new ParserExecution class.
@@ -44,12 +56,43 @@ public class FulltextParserExcecution {
     this.saveStrategy = new DocumentModelStrategy();
   }
 
+  /**
+   * Set the {@link ParseBudget} for each parsed resource. A resource which
+   * hangs the parser is given up by a {@link ParseWatchdog}, so it doesn't
+   * stall the whole run.
+   * 
+   * @param parseBudget
+   *          - the {@link ParseBudget}
+   */
+  public void setParseBudget(final ParseBudget parseBudget) {
+    if (parseBudget == null) {
+      throw new IllegalArgumentException("Parameters mustn't be null in FulltextParserExecution!");
+    }
+    this.parseBudget = parseBudget;
+  }
+
+  /**
+   * Set the {@link TextEncoding} of the parsed documents which are kept in the
+   * result set.
+   * 
+   * @param textEncoding
+   *          - the {@link TextEncoding}
+   */
+  public void setTextEncoding(final TextEncoding textEncoding) {
+    if (textEncoding == null) {
+      throw new IllegalArgumentException("Parameters mustn't be null in FulltextParserExecution!");
+    }
+    this.textEncoding = textEncoding;
+  }
+
   /**
    * Parse resources of all kinds. The resources will be won by the specified
    * {@link Harvester}. Exceptions are written in a log file defined by the
    * {@link LogFile} class.
    * 
-   * @return the result of the used {@link ISaveStrategy} in a Set.
+   * @return the result of the used {@link ISaveStrategy} in a Set. The caller
+   *         owns the documents and should dispose them, see
+   *         {@link GeneralDocument#dispose()}.
    */
   public Set<Object> parse(final String startURI) {
     Set<String> uris = harvester.harvest(startURI);
@@ -58,13 +101,16 @@ public class FulltextParserExcecution {
     for (String uri : uris) {
       ResourceParser parser = null;
       if (this.harvester.getResourceAccepter().isEDoc(uri)) {
-        parser = EdocParserImpl.getInstance();
+        parser = ParserRegistry.getInstance().getParser(EdocParserImpl.class);
       }    
 
       if (parser != null) {
         Object result;
         try {
-          result = parser.parse(startURI, uri);
+          result = this.watchdog.parse(parser, startURI, uri, this.parseBudget);
+          if (result instanceof GeneralDocument) {
+            ((GeneralDocument) result).compact(this.textEncoding);
+          }
           results.add(result);
         } catch (ApplicationException e) {
           System.out.println(e);
@@ -76,4 +122,56 @@ public class FulltextParserExcecution {
     }
     return results;
   }
+
+  /**
+   * Parse the harvested resources of all kinds in parallel. Unlike
+   * {@link #parse(String)}, each resource gets a {@link ParseResult}, so the
+   * failed resources are known exactly.
+   * 
+   * @param startURI
+   *          - the URI where the harvesting starts.
+   * @param parallelism
+   *          - the number of resources which are parsed at the same time.
+   * @return the {@link ParseResult}s in the order of the harvested URIs.
+   * @throws ApplicationException
+   *           if the parsing was interrupted.
+   */
+  public List<ParseResult> parseAll(final String startURI, final int parallelism) throws ApplicationException {
+    Set<String> uris = harvester.harvest(startURI);
+
+    DocumentParser parser = new DocumentParser();
+    parser.setParseBudget(this.parseBudget);
+    parser.setTextEncoding(this.textEncoding);
+    parser.setBatchParallelism(parallelism);
+    return parser.parseAll(uris);
+  }
+
+  /**
+   * Parse the metadata of the harvested resources only. The fulltext isn't
+   * extracted. Exceptions are printed.
+   * 
+   * @return the {@link MetadataRecord}s in a Set.
+   */
+  public Set<MetadataRecord> parseMetadata(final String startURI) {
+    Set<String> uris = harvester.harvest(startURI);
+    Set<MetadataRecord> results = new HashSet<MetadataRecord>();
+
+    for (String uri : uris) {
+      ResourceParser parser = null;
+      if (this.harvester.getResourceAccepter().isEDoc(uri)) {
+        parser = ParserRegistry.getInstance().getParser(EdocParserImpl.class);
+      }
+
+      if (parser != null) {
+        try {
+          results.add(parser.parseMetadata(startURI, uri));
+        } catch (ApplicationException e) {
+          System.out.println(e);
+        }
+      } else {
+        System.out.println("There's no parser available for this type of resource: " + this.harvester.getResourceAccepter().getExtension(uri));
+      }
+    }
+    return results;
+  }
 }
@@ -0,0 +1,96 @@
+package org.bbaw.wsp.cms.dochandler.parser.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.util.PDFTextStripper;
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.IPdfPageConsumer;
+import org.bbaw.wsp.cms.dochandler.parser.text.parser.PageBoundaryTextStripper;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * Evaluation of the PDF text stripping. The former loop (one
+ * {@link PDFTextStripper} per page) is compared to the single pass of the
+ * {@link PageBoundaryTextStripper}. Use a PDF with several hundred pages.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class PdfStripperEvaluation {
+
+  private static final String PDF_FILE = "C:/Dokumente und Einstellungen/wsp-shk1/Eigene Dateien/opus32_bbaw_volltexte_20120607/volltexte/2009/1120/pdf/05_Lucius.pdf";
+  private static final int RUNS = 5;
+
+  /**
+   * Evaluation of the PDF stripping.
+   * 
+   * @param args
+   *          - optional: the path to the PDF file and the number of runs.
+   */
+  public static void main(String[] args) throws IOException, ApplicationException {
+    final File pdfFile = new File(args.length > 0 ? args[0] : PDF_FILE);
+    final int runs = args.length > 1 ? Integer.parseInt(args[1]) : RUNS;
+
+    PDDocument document = PDDocument.load(pdfFile);
+    try {
+      System.out.println("Testlauf: " + pdfFile + " (" + document.getNumberOfPages() + " Seiten, " + runs + " Durchläufe)");
+
+      // warm up both variants
+      List<String> loopPages = stripPerPage(document);
+      List<String> singlePassPages = stripSinglePass(document);
+
+      long loopTime = 0;
+      long singlePassTime = 0;
+      for (int run = 0; run < runs; run++) {
+        long startTime = new Date().getTime();
+        loopPages = stripPerPage(document);
+        loopTime += new Date().getTime() - startTime;
+
+        startTime = new Date().getTime();
+        singlePassPages = stripSinglePass(document);
+        singlePassTime += new Date().getTime() - startTime;
+      }
+
+      System.out.println("Schleife (ein Stripper pro Seite): " + (loopTime / runs) + " ms.");
+      System.out.println("Ein Durchlauf (PageBoundaryTextStripper): " + (singlePassTime / runs) + " ms.");
+      System.out.println("Gleicher Text: " + loopPages.equals(singlePassPages));
+    } finally {
+      document.close();
+    }
+  }
+
+  /*
+   * The former loop of the PdfParserImpl.
+   */
+  private static List<String> stripPerPage(final PDDocument document) throws IOException {
+    final List<String> pages = new ArrayList<String>();
+    for (int i = 1; i <= document.getNumberOfPages(); i++) {
+      PDFTextStripper stripper = new PDFTextStripper();
+      stripper.setStartPage(i);
+      stripper.setEndPage(i);
+      pages.add(stripper.getText(document));
+    }
+    return pages;
+  }
+
+  /*
+   * The single pass of the PdfParserImpl.
+   */
+  private static List<String> stripSinglePass(final PDDocument document) throws IOException, ApplicationException {
+    final List<String> pages = new ArrayList<String>();
+    PageBoundaryTextStripper stripper = new PageBoundaryTextStripper(new IPdfPageConsumer() {
+
+      public void consumePage(final PdfPage page) {
+        pages.add(page.getTextOrig());
+      }
+    });
+    stripper.stripPages(document);
+    return pages;
+  }
+}
@@ -32,6 +32,33 @@ public class MetadataRecord {
   private String isbn; // e.g. the KOBV ISBN
   private Date creationDate; // e.g. the KOBV "Erstellungsjahr"
   private Date publishingDate; // e.g. the KOBV "Publikationsdatum"
+  private String realDocUrl; // e.g. the URL to the pdf file of a KOBV eDoc
+  private int width; // e.g. the width of an image in pixels
+  private int height; // e.g. the height of an image in pixels
+  
+  public int getWidth() {
+    return width;
+  }
+
+  public void setWidth(int width) {
+    this.width = width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public void setHeight(int height) {
+    this.height = height;
+  }
+
+  public String getRealDocUrl() {
+    return realDocUrl;
+  }
+  
+  public void setRealDocUrl(String realDocUrl) {
+    this.realDocUrl = realDocUrl;
+  }
   
   public String getDocumentType() {
     return documentType;
@@ -270,7 +297,7 @@ public class MetadataRecord {
 
 @Override
 public String toString() {
-  return "MetadataRecord [docId=" + docId + ", identifier=" + identifier + ", uri=" + uri + ", language=" + language + ", creator=" + creator + ", title=" + title + ", description=" + description + ", subject=" + subject + ", ddc=" + ddc + ", swd=" + swd + ", publisher=" + publisher + ", type=" + type + ", rights=" + rights + ", date=" + date + ", license=" + license + ", accessRights=" + accessRights + ", collectionNames=" + collectionNames + ", schemaName=" + schemaName + ", lastModified=" + lastModified + ", pageCount=" + pageCount + ", persons=" + persons + ", places=" + places + ", echoId=" + echoId + ", urn=" + urn + ", documentType=" + documentType + ", isbn=" + isbn + ", creationDate=" + creationDate + ", publishingDate=" + publishingDate + "]";
+  return "MetadataRecord [docId=" + docId + ", identifier=" + identifier + ", uri=" + uri + ", language=" + language + ", creator=" + creator + ", title=" + title + ", description=" + description + ", subject=" + subject + ", ddc=" + ddc + ", swd=" + swd + ", publisher=" + publisher + ", type=" + type + ", rights=" + rights + ", date=" + date + ", license=" + license + ", accessRights=" + accessRights + ", collectionNames=" + collectionNames + ", schemaName=" + schemaName + ", lastModified=" + lastModified + ", pageCount=" + pageCount + ", persons=" + persons + ", places=" + places + ", echoId=" + echoId + ", urn=" + urn + ", documentType=" + documentType + ", isbn=" + isbn + ", creationDate=" + creationDate + ", publishingDate=" + publishingDate + ", realDocUrl=" + realDocUrl + ", width=" + width + ", height=" + height + "]";
 }
 
 }
@@ -0,0 +1,130 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+/**
+ * This class reads the file entries of a ZIP or a gzipped TAR archive from a
+ * stream. Nothing is unpacked to the disk: each entry is read into the heap
+ * when it's needed. Directories are skipped.
+ *
+ * Usage: call {@link #nextEntry()} until it returns null and read each entry
+ * by {@link #readEntry(int)}.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+final class ArchiveEntryReader {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ZipInputStream zipInput;
+  private final TarArchiveInputStream tarInput;
+  private long entrySize;
+
+  private ArchiveEntryReader(final ZipInputStream zipInput, final TarArchiveInputStream tarInput) {
+    this.zipInput = zipInput;
+    this.tarInput = tarInput;
+  }
+
+  /**
+   * Check if there's an {@link ArchiveEntryReader} for a content type.
+   *
+   * @param contentType
+   *          - the content type, see {@link ContentTypeDetector}.
+   * @return true if the content type is {@link ContentTypeDetector#TYPE_ZIP}
+   *         or {@link ContentTypeDetector#TYPE_GZIP}.
+   */
+  static boolean isArchive(final String contentType) {
+    return ContentTypeDetector.TYPE_ZIP.equals(contentType) || ContentTypeDetector.TYPE_GZIP.equals(contentType);
+  }
+
+  /**
+   * Open an archive.
+   *
+   * @param input
+   *          - the {@link InputStream} of the archive. It isn't closed by the
+   *          reader.
+   * @param contentType
+   *          - {@link ContentTypeDetector#TYPE_ZIP} or
+   *          {@link ContentTypeDetector#TYPE_GZIP} for a .tar.gz archive.
+   * @return the {@link ArchiveEntryReader}
+   * @throws IOException
+   *           if the gzip header can't be read.
+   * @throws IllegalArgumentException
+   *           if the content type isn't an archive.
+   */
+  static ArchiveEntryReader open(final InputStream input, final String contentType) throws IOException {
+    if (ContentTypeDetector.TYPE_ZIP.equals(contentType)) {
+      return new ArchiveEntryReader(new ZipInputStream(input), null);
+    } else if (ContentTypeDetector.TYPE_GZIP.equals(contentType)) {
+      return new ArchiveEntryReader(null, new TarArchiveInputStream(new GZIPInputStream(input, BUFFER_SIZE)));
+    }
+    throw new IllegalArgumentException("The content type " + contentType + " in ArchiveEntryReader isn't an archive.");
+  }
+
+  /**
+   * Move to the next file entry. The rest of the current entry is skipped.
+   *
+   * @return the path of the entry within the archive or null if there are no
+   *         more entries.
+   * @throws IOException
+   *           if the archive is broken.
+   */
+  String nextEntry() throws IOException {
+    if (this.zipInput != null) {
+      ZipEntry entry;
+      do {
+        entry = this.zipInput.getNextEntry();
+      } while (entry != null && entry.isDirectory());
+      if (entry == null) {
+        return null;
+      }
+      this.entrySize = entry.getSize();
+      return entry.getName();
+    }
+    TarArchiveEntry entry;
+    do {
+      entry = this.tarInput.getNextTarEntry();
+    } while (entry != null && !entry.isFile());
+    if (entry == null) {
+      return null;
+    }
+    this.entrySize = entry.getSize();
+    return entry.getName();
+  }
+
+  /**
+   * Read the current entry into the heap.
+   *
+   * @param maxSize
+   *          - the maximum number of bytes.
+   * @return the bytes or null if the entry is larger than maxSize. The entry
+   *         is skipped in that case.
+   * @throws IOException
+   *           if the archive is broken.
+   */
+  byte[] readEntry(final int maxSize) throws IOException {
+    if (this.entrySize > maxSize) {
+      return null;
+    }
+    final InputStream entryInput = this.zipInput != null ? this.zipInput : this.tarInput;
+    // the size of a ZIP entry is unknown (-1) if it's written by a stream
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.entrySize >= 0 ? (int) this.entrySize : BUFFER_SIZE);
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    int count;
+    while ((count = entryInput.read(buffer)) != -1) {
+      if (bytes.size() + count > maxSize) {
+        return null;
+      }
+      bytes.write(buffer, 0, count);
+    }
+    return bytes.toByteArray();
+  }
+}
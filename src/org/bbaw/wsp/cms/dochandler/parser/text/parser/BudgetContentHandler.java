@@ -0,0 +1,88 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * This handler checks the wall-clock time of a {@link ParseBudget} on each SAX
+ * event and stops the Tika parser with a SAXException if the time is over. The
+ * characters which were handed on before are kept by the decorated handler.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class BudgetContentHandler extends ContentHandlerDecorator {
+
+  private final ParseBudget budget;
+  private final long startTime;
+
+  /**
+   * Create a new BudgetContentHandler. The time is measured from now on.
+   * 
+   * @param handler
+   *          - the decorated {@link ContentHandler}.
+   * @param budget
+   *          - the {@link ParseBudget}.
+   */
+  BudgetContentHandler(final ContentHandler handler, final ParseBudget budget) {
+    super(handler);
+    this.budget = budget;
+    this.startTime = System.currentTimeMillis();
+  }
+
+  @Override
+  public void startElement(final String uri, final String localName, final String name, final Attributes atts) throws SAXException {
+    this.checkTime();
+    super.startElement(uri, localName, name, atts);
+  }
+
+  @Override
+  public void characters(final char[] ch, final int start, final int length) throws SAXException {
+    this.checkTime();
+    super.characters(ch, start, length);
+  }
+
+  @Override
+  public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+    this.checkTime();
+    super.ignorableWhitespace(ch, start, length);
+  }
+
+  /**
+   * Check if the given exception (or one of its causes) was thrown by this
+   * handler.
+   * 
+   * @param t
+   *          - the exception thrown by the parser.
+   * @return the reason if the time of this handler was over or null.
+   */
+  String getExceededReason(final Throwable t) {
+    Throwable cause = t;
+    while (cause != null) {
+      if (cause instanceof BudgetExceededSAXException && ((BudgetExceededSAXException) cause).handler == this) {
+        return cause.getMessage();
+      }
+      cause = cause.getCause();
+    }
+    return null;
+  }
+
+  private void checkTime() throws SAXException {
+    final String reason = this.budget.checkTime(this.startTime);
+    if (reason != null) {
+      throw new BudgetExceededSAXException(this, reason);
+    }
+  }
+
+  private static class BudgetExceededSAXException extends SAXException {
+    private static final long serialVersionUID = 1L;
+    private final transient BudgetContentHandler handler;
+
+    BudgetExceededSAXException(final BudgetContentHandler handler, final String reason) {
+      super(reason);
+      this.handler = handler;
+    }
+  }
+}
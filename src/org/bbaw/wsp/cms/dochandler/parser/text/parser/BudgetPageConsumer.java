@@ -0,0 +1,65 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This consumer checks a {@link ParseBudget} at each page boundary and passes
+ * the pages on to another consumer. If the budget is exceeded, the page which
+ * would exceed the character limit is cut and the parsing is stopped with a
+ * {@link ParseBudgetExceededException}.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class BudgetPageConsumer implements IPdfPageConsumer {
+
+  private final ParseBudget budget;
+  private final IPdfPageConsumer target;
+  private final long startTime;
+  private int pageCount;
+  private long charCount;
+  private String stopReason;
+
+  /**
+   * Create a new BudgetPageConsumer. The time is measured from now on.
+   * 
+   * @param budget
+   *          - the {@link ParseBudget}.
+   * @param target
+   *          - the {@link IPdfPageConsumer} which receives the pages.
+   */
+  BudgetPageConsumer(final ParseBudget budget, final IPdfPageConsumer target) {
+    this.budget = budget;
+    this.target = target;
+    this.startTime = System.currentTimeMillis();
+  }
+
+  public synchronized void consumePage(final PdfPage page) throws ApplicationException {
+    if (this.stopReason == null) {
+      this.stopReason = this.budget.checkTime(this.startTime);
+    }
+    if (this.stopReason == null && this.budget.getMaxPages() > 0 && this.pageCount >= this.budget.getMaxPages()) {
+      this.stopReason = "The page budget of " + this.budget.getMaxPages() + " pages was exceeded.";
+    }
+    if (this.stopReason != null) {
+      throw new ParseBudgetExceededException(this.stopReason);
+    }
+
+    PdfPage acceptedPage = page;
+    final String text = page.getTextOrig();
+    if (this.budget.getMaxChars() > 0 && this.charCount + text.length() > this.budget.getMaxChars()) {
+      final int remaining = (int) (this.budget.getMaxChars() - this.charCount);
+      acceptedPage = new PdfPage(page.getPageNumber(), text.substring(0, remaining));
+      this.stopReason = "The character budget of " + this.budget.getMaxChars() + " characters was exceeded.";
+    }
+    this.pageCount++;
+    this.charCount += acceptedPage.getTextOrig().length();
+    this.target.consumePage(acceptedPage);
+
+    if (this.stopReason != null) {
+      throw new ParseBudgetExceededException(this.stopReason);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This cache keeps the detected content types per URI. An entry is only valid
+ * as long as the resource wasn't modified. The least recently used entries are
+ * removed if the cache is full.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class ContentTypeCache {
+
+  private final Map<String, CachedType> entries;
+
+  /**
+   * Create a new ContentTypeCache.
+   * 
+   * @param capacity
+   *          - the maximum number of entries.
+   */
+  ContentTypeCache(final int capacity) {
+    this.entries = new LinkedHashMap<String, CachedType>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedType> eldest) {
+        return this.size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Return the cached content type.
+   * 
+   * @param uri
+   *          - the URI of the resource.
+   * @param lastModified
+   *          - the current modification time of the resource.
+   * @return the content type or null if it isn't cached or the resource was
+   *         modified since.
+   */
+  synchronized String get(final String uri, final long lastModified) {
+    final CachedType entry = this.entries.get(uri);
+    if (entry == null || entry.lastModified != lastModified) {
+      return null;
+    }
+    return entry.type;
+  }
+
+  /**
+   * Cache a content type.
+   * 
+   * @param uri
+   *          - the URI of the resource.
+   * @param lastModified
+   *          - the modification time of the resource.
+   * @param type
+   *          - the detected content type.
+   */
+  synchronized void put(final String uri, final long lastModified, final String type) {
+    this.entries.put(uri, new CachedType(lastModified, type));
+  }
+
+  private static class CachedType {
+    private final long lastModified;
+    private final String type;
+
+    CachedType(final long lastModified, final String type) {
+      this.lastModified = lastModified;
+      this.type = type;
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class detects the content type of a resource from its first bytes (the
+ * "magic bytes"). The extension of the URI is only used if the bytes don't
+ * tell the type, e.g. for plain text or for zip files without a mimetype
+ * entry.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class ContentTypeDetector {
+  /**
+   * Number of bytes which are read for the detection.
+   */
+  public static final int HEADER_SIZE = 8192;
+
+  public static final String TYPE_PDF = "application/pdf";
+  public static final String TYPE_DOC = "application/msword";
+  public static final String TYPE_ODT = "application/vnd.oasis.opendocument.text";
+  public static final String TYPE_XML = "application/xml";
+  public static final String TYPE_HTML = "text/html";
+  public static final String TYPE_XHTML = "application/xhtml+xml";
+  public static final String TYPE_TXT = "text/plain";
+  public static final String TYPE_JPEG = "image/jpeg";
+  public static final String TYPE_PNG = "image/png";
+  public static final String TYPE_TIFF = "image/tiff";
+  public static final String TYPE_ZIP = "application/zip";
+  public static final String TYPE_GZIP = "application/gzip";
+
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final byte[] MAGIC_PDF = { '%', 'P', 'D', 'F', '-' };
+  private static final byte[] MAGIC_OLE = { (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1 };
+  private static final byte[] MAGIC_ZIP = { 'P', 'K', 3, 4 };
+  private static final byte[] MAGIC_GZIP = { 0x1F, (byte) 0x8B };
+  private static final byte[] MAGIC_JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+  private static final byte[] MAGIC_PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+  private static final byte[] MAGIC_TIFF_LE = { 'I', 'I', 42, 0 };
+  private static final byte[] MAGIC_TIFF_BE = { 'M', 'M', 0, 42 };
+  // An OpenDocument file starts with the uncompressed entry "mimetype"
+  private static final String ODF_MIMETYPE_ENTRY = "mimetype";
+  private static final int ZIP_NAME_OFFSET = 30;
+  private static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+  private static final Set<String> HTML_FRAGMENT_ROOTS = new HashSet<String>(Arrays.asList("head", "body", "title", "meta", "div", "p", "table"));
+
+  private static final Map<String, String> TYPES_BY_EXTENSION;
+
+  static {
+    Map<String, String> types = new HashMap<String, String>();
+    types.put(DocumentParser.EXT_PDF, TYPE_PDF);
+    types.put(DocumentParser.EXT_DOC, TYPE_DOC);
+    types.put(DocumentParser.EXT_ODT, TYPE_ODT);
+    types.put(DocumentParser.EXT_XML, TYPE_XML);
+    types.put(DocumentParser.EXT_HTML, TYPE_HTML);
+    types.put(DocumentParser.EXT_HTM, TYPE_HTML);
+    types.put(DocumentParser.EXT_XHTML, TYPE_XHTML);
+    types.put(DocumentParser.EXT_TXT, TYPE_TXT);
+    types.put(DocumentParser.EXT_JPG, TYPE_JPEG);
+    types.put(DocumentParser.EXT_PNG, TYPE_PNG);
+    types.put(DocumentParser.EXT_TIFF, TYPE_TIFF);
+    types.put(DocumentParser.EXT_TIF, TYPE_TIFF);
+    types.put(DocumentParser.EXT_JPEG, TYPE_JPEG);
+    types.put(DocumentParser.EXT_ZIP, TYPE_ZIP);
+    types.put(DocumentParser.EXT_GZ, TYPE_GZIP);
+    types.put(DocumentParser.EXT_TGZ, TYPE_GZIP);
+    TYPES_BY_EXTENSION = Collections.unmodifiableMap(types);
+  }
+
+  /**
+   * Detect the content type of a stream. The stream must support mark() and
+   * reset(), e.g. a {@link java.io.BufferedInputStream}. It's reset to its
+   * start, so the parser reads the bytes again without a second request.
+   * 
+   * @param input
+   *          - the {@link InputStream} which supports mark().
+   * @param uri
+   *          - the URI of the resource.
+   * @return the content type or null if it's unknown.
+   * @throws IOException
+   *           if the stream can't get read.
+   * @throws IllegalArgumentException
+   *           if the stream doesn't support mark().
+   */
+  public static String detect(final InputStream input, final String uri) throws IOException {
+    if (!input.markSupported()) {
+      throw new IllegalArgumentException("The value for the parameter input in ContentTypeDetector.detect() must support mark().");
+    }
+    final byte[] header = new byte[HEADER_SIZE];
+    input.mark(HEADER_SIZE);
+    int length = 0;
+    try {
+      int count;
+      while (length < HEADER_SIZE && (count = input.read(header, length, HEADER_SIZE - length)) != -1) {
+        length += count;
+      }
+    } finally {
+      input.reset();
+    }
+    return detect(header, length, uri);
+  }
+
+  /**
+   * Detect the content type of the first bytes of a resource.
+   * 
+   * @param header
+   *          - the first bytes.
+   * @param length
+   *          - the number of valid bytes.
+   * @param uri
+   *          - the URI of the resource.
+   * @return the content type or null if it's unknown.
+   */
+  public static String detect(final byte[] header, final int length, final String uri) {
+    final String extensionType = getTypeByExtension(uri);
+    final String magicType = detectMagic(header, length);
+    if (magicType == null) {
+      return extensionType;
+    }
+    // the bytes only tell a generic type, the extension may be more specific
+    if ((magicType.equals(TYPE_TXT) || magicType.equals(TYPE_ZIP)) && extensionType != null) {
+      return extensionType;
+    }
+    // a .xml file is parsed as XML, even if it looks like XHTML
+    if (TYPE_XML.equals(extensionType) && isMarkup(magicType)) {
+      return TYPE_XML;
+    }
+    return magicType;
+  }
+
+  /**
+   * Return the content type which belongs to the extension of a URI.
+   * 
+   * @param uri
+   *          - the URI.
+   * @return the content type or null if the extension is unknown or missing.
+   */
+  public static String getTypeByExtension(final String uri) {
+    final String extension = DocumentParser.getExtensionOf(uri);
+    return TYPES_BY_EXTENSION.get(extension.toLowerCase(Locale.ENGLISH));
+  }
+
+  private static String detectMagic(final byte[] header, final int length) {
+    if (startsWith(header, length, MAGIC_PDF)) {
+      return TYPE_PDF;
+    } else if (startsWith(header, length, MAGIC_OLE)) {
+      return TYPE_DOC;
+    } else if (startsWith(header, length, MAGIC_ZIP)) {
+      return detectZip(header, length);
+    } else if (startsWith(header, length, MAGIC_GZIP)) {
+      return TYPE_GZIP;
+    } else if (startsWith(header, length, MAGIC_JPEG)) {
+      return TYPE_JPEG;
+    } else if (startsWith(header, length, MAGIC_PNG)) {
+      return TYPE_PNG;
+    } else if (startsWith(header, length, MAGIC_TIFF_LE) || startsWith(header, length, MAGIC_TIFF_BE)) {
+      return TYPE_TIFF;
+    }
+    return detectText(header, length);
+  }
+
+  private static String detectZip(final byte[] header, final int length) {
+    if (length < ZIP_NAME_OFFSET) {
+      return TYPE_ZIP;
+    }
+    final int nameLength = (header[26] & 0xFF) | (header[27] & 0xFF) << 8;
+    final int extraLength = (header[28] & 0xFF) | (header[29] & 0xFF) << 8;
+    final int dataOffset = ZIP_NAME_OFFSET + nameLength + extraLength;
+    if (length > dataOffset && nameLength == ODF_MIMETYPE_ENTRY.length() && new String(header, ZIP_NAME_OFFSET, nameLength, ISO_8859_1).equals(ODF_MIMETYPE_ENTRY)) {
+      final String mimetype = new String(header, dataOffset, Math.min(length - dataOffset, TYPE_ODT.length()), ISO_8859_1);
+      if (mimetype.equals(TYPE_ODT)) {
+        return TYPE_ODT;
+      }
+    }
+    return TYPE_ZIP;
+  }
+
+  /*
+   * Markup is recognized by its root element, everything else without control
+   * characters is plain text. The root element is found behind the XML
+   * declaration, comments and the doctype.
+   */
+  private static String detectText(final byte[] header, final int length) {
+    if (length == 0) {
+      return null;
+    }
+    for (int i = 0; i < length; i++) {
+      final int b = header[i] & 0xFF;
+      if (b == 0 || (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1B)) {
+        return null;
+      }
+    }
+    final String text = new String(header, 0, length, ISO_8859_1).toLowerCase(Locale.ENGLISH);
+    int start = 0;
+    if (text.startsWith("\u00EF\u00BB\u00BF")) { // UTF-8 byte order mark
+      start = 3;
+    }
+    start = skipWhitespace(text, start);
+    if (!text.startsWith("<", start)) {
+      return TYPE_TXT;
+    }
+    final boolean xmlDeclaration = text.startsWith("<?xml", start);
+    boolean htmlDoctype = false;
+    int pos = start;
+    String root = null;
+    while (root == null && pos < text.length()) {
+      if (text.startsWith("<?", pos)) {
+        pos = skipBehind(text, pos, "?>");
+      } else if (text.startsWith("<!--", pos)) {
+        pos = skipBehind(text, pos, "-->");
+      } else if (text.startsWith("<!doctype", pos)) {
+        htmlDoctype = skipWhitespace(text, pos + "<!doctype".length()) == text.indexOf("html", pos);
+        pos = skipBehind(text, pos, ">");
+      } else if (text.startsWith("<", pos)) {
+        int end = pos + 1;
+        while (end < text.length() && isNameChar(text.charAt(end))) {
+          end++;
+        }
+        root = text.substring(pos + 1, end);
+        // a prefixed root element, e.g. <xhtml:html>
+        root = root.substring(root.indexOf(':') + 1);
+        final int tagEnd = text.indexOf('>', end);
+        if (text.substring(end, tagEnd != -1 ? tagEnd : text.length()).contains(XHTML_NAMESPACE)) {
+          return TYPE_XHTML;
+        }
+      } else {
+        break;
+      }
+      pos = skipWhitespace(text, pos);
+    }
+    // without an XML declaration, HTML may start with any of its elements
+    final boolean html = htmlDoctype || "html".equals(root) || (!xmlDeclaration && root != null && HTML_FRAGMENT_ROOTS.contains(root));
+    if (xmlDeclaration) {
+      return html ? TYPE_XHTML : TYPE_XML;
+    }
+    return html ? TYPE_HTML : TYPE_XML;
+  }
+
+  private static boolean isMarkup(final String type) {
+    return TYPE_XML.equals(type) || TYPE_XHTML.equals(type) || TYPE_HTML.equals(type);
+  }
+
+  private static int skipWhitespace(final String text, final int start) {
+    int pos = start;
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }
+
+  private static int skipBehind(final String text, final int start, final String end) {
+    final int pos = text.indexOf(end, start);
+    return pos == -1 ? text.length() : pos + end.length();
+  }
+
+  private static boolean isNameChar(final char c) {
+    return Character.isLetterOrDigit(c) || c == ':' || c == '_' || c == '-' || c == '.';
+  }
+
+  private static boolean startsWith(final byte[] header, final int length, final byte[] magic) {
+    if (length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (header[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -19,9 +19,9 @@ public class DocParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static DocParserImpl getInstance() {
+  public static synchronized DocParserImpl getInstance() {
     if (instance == null) {
-      return new DocParserImpl();
+      instance = new DocParserImpl();
     }
     return instance;
   }
@@ -0,0 +1,69 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+
+/**
+ * This cache keeps the parsed documents per URI, so a resource which wasn't
+ * modified needn't be parsed again. The least recently used documents are
+ * removed if the cache is full.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+class DocumentCache {
+
+  private final Map<String, IDocument> documents;
+
+  /**
+   * Create a new DocumentCache.
+   *
+   * @param capacity
+   *          - the maximum number of documents. 0 disables the cache.
+   */
+  DocumentCache(final int capacity) {
+    this.documents = new LinkedHashMap<String, IDocument>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, IDocument> eldest) {
+        return this.size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Return the cached document.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   * @return the {@link IDocument} or null if it isn't cached.
+   */
+  synchronized IDocument get(final String uri) {
+    return this.documents.get(uri);
+  }
+
+  /**
+   * Cache a parsed document.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   * @param document
+   *          - the parsed {@link IDocument}.
+   */
+  synchronized void put(final String uri, final IDocument document) {
+    this.documents.put(uri, document);
+  }
+
+  /**
+   * Remove a document.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   */
+  synchronized void remove(final String uri) {
+    this.documents.remove(uri);
+  }
+}
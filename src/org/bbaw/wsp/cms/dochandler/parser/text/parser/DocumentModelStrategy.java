@@ -1,10 +1,15 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
 import java.util.List;
+import java.util.SortedMap;
 
 import org.bbaw.wsp.cms.dochandler.parser.document.GeneralDocument;
 import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.IPageTextSource;
+import org.bbaw.wsp.cms.dochandler.parser.document.LazyPdfDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.OdfDocument;
 import org.bbaw.wsp.cms.dochandler.parser.document.PdfDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.SpilledText;
 
 /**
  * This class realizes a DocumentModel - Strategy. That means the strategy
@@ -23,12 +28,38 @@ public class DocumentModelStrategy {
     return document;
   }
 
+  public Object generateDocumentModel(final String startURI, final String uri, final SpilledText text) {
+    IDocument document = new GeneralDocument(uri, text);
+    return document;
+  }
+
+  public Object generateDocumentModel(final String startURI, final String uri, final String text, final SortedMap<Integer, String> footnotes) {
+    IDocument document = new OdfDocument(uri, text, footnotes);
+    return document;
+  }
+
+  public Object generateDocumentModel(final String startURI, final String uri, final SpilledText text, final SortedMap<Integer, String> footnotes) {
+    IDocument document = new OdfDocument(uri, text, footnotes);
+    return document;
+  }
+
   public Object generateDocumentModel(final String startURI, final String uri, final List<String> textPages) {
-    StringBuilder textBuilder = new StringBuilder();
-    for (int i = 1; i <= textPages.size(); i++) {
-      textBuilder.append("[page=" + i + "]\n" + textPages.get(i - 1));
-    }
-    IDocument document = new PdfDocument(uri, textBuilder.toString(), textPages);
+    IDocument document = new PdfDocument(uri, textPages);
+    return document;
+  }
+
+  public Object generateDocumentModel(final String startURI, final String uri, final char[] text, final int[] pageOffsets) {
+    IDocument document = new PdfDocument(uri, text, pageOffsets);
+    return document;
+  }
+
+  public Object generateDocumentModel(final String startURI, final String uri, final SpilledText text, final int[] pageOffsets) {
+    IDocument document = new PdfDocument(uri, text, pageOffsets);
+    return document;
+  }
+
+  public Object generateDocumentModel(final String startURI, final String uri, final int pageCount, final IPageTextSource pageSource) {
+    IDocument document = new LazyPdfDocument(uri, pageCount, pageSource);
     return document;
   }
 
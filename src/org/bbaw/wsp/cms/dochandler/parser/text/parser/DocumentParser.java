@@ -1,18 +1,46 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.bbaw.wsp.cms.dochandler.parser.document.GeneralDocument;
 import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.TextEncoding;
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+import org.bbaw.wsp.cms.dochandler.parser.text.reader.HttpValidatorStore;
+import org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader;
+import org.bbaw.wsp.cms.dochandler.parser.text.reader.ResourceReaderImpl;
+import org.bbaw.wsp.util.EdocDetectionService;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
 
 /**
  * Instances of this class parse heterogeneous documents including KOBV eDocs.
  * 
+ * The caller owns the returned documents: the text of a very large document
+ * is spilled to a temporary file, which is deleted by
+ * {@link GeneralDocument#dispose()}. Documents of
+ * {@link #parseIfModified(String)} are shared with the cache and mustn't be
+ * disposed, their files are deleted after they were garbage collected.
+ * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 28.08.2012
  * 
@@ -40,10 +68,18 @@ public class DocumentParser {
    * JPG extension.
    */
   public static final String EXT_JPG = ".jpg";
+  /**
+   * JPEG extension.
+   */
+  public static final String EXT_JPEG = ".jpeg";
   /**
    * TIFF extension.
    */
   public static final String EXT_TIFF = ".tiff";
+  /**
+   * TIF extension.
+   */
+  public static final String EXT_TIF = ".tif";
   /**
    * PNG extension.
    */
@@ -64,8 +100,54 @@ public class DocumentParser {
    * TXT extension.
    */
   public static final String EXT_TXT = ".txt";
+  /**
+   * ZIP extension.
+   */
+  public static final String EXT_ZIP = ".zip";
+  /**
+   * GZ extension, e.g. of a .tar.gz archive.
+   */
+  public static final String EXT_GZ = ".gz";
+  /**
+   * TGZ extension.
+   */
+  public static final String EXT_TGZ = ".tgz";
+
+  /*
+   * Detected content types, shared by all instances.
+   */
+  private static final ContentTypeCache CONTENT_TYPE_CACHE = new ContentTypeCache(4096);
+  /**
+   * Default number of threads for the asynchronous parsing.
+   */
+  public static final int DEFAULT_ASYNC_THREADS = 16;
+  /**
+   * Default maximum size of an archive entry in bytes.
+   */
+  public static final int DEFAULT_MAX_ARCHIVE_ENTRY_SIZE = 64 * 1024 * 1024;
+  /**
+   * Default number of parsed documents which are kept for
+   * {@link #parseIfModified(String)}.
+   */
+  public static final int DEFAULT_DOCUMENT_CACHE_CAPACITY = 128;
+  /*
+   * Default executor for the asynchronous parsing, shared by all instances.
+   * It's created on the first use.
+   */
+  private static ExecutorService sharedExecutor;
 
   protected DocumentModelStrategy documentModelBuilder;
+  private volatile IResourceReader resourceReader = new ResourceReaderImpl();
+  // volatile because the asynchronous parsing reads the configuration in
+  // other threads
+  private volatile ParseBudget parseBudget = ParseBudget.UNLIMITED;
+  private volatile ParseWatchdog watchdog;
+  private volatile TextEncoding textEncoding = TextEncoding.PLAIN;
+  private volatile ExecutorService executor;
+  private volatile int batchParallelism = Runtime.getRuntime().availableProcessors();
+  private volatile int archiveParallelism = Runtime.getRuntime().availableProcessors();
+  private volatile int maxArchiveEntrySize = DEFAULT_MAX_ARCHIVE_ENTRY_SIZE;
+  private volatile DocumentCache documentCache = new DocumentCache(DEFAULT_DOCUMENT_CACHE_CAPACITY);
 
   /**
    * Create a new DocumentParser instance. An instance will offer a
@@ -73,6 +155,91 @@ public class DocumentParser {
    */
   public DocumentParser() {
     this.documentModelBuilder = new DocumentModelStrategy();
+    this.watchdog = new ParseWatchdog();
+  }
+
+  /**
+   * Set the {@link ParseBudget} for each parsed document. Documents which
+   * exceed the budget are returned partially or fail with a
+   * {@link ParseBudgetExceededException}.
+   * 
+   * @param parseBudget
+   *          - the {@link ParseBudget}. Use {@link ParseBudget#UNLIMITED} to
+   *          disable the limits.
+   * @throws IllegalArgumentException
+   *           if the budget is null.
+   */
+  public void setParseBudget(final ParseBudget parseBudget) {
+    if (parseBudget == null) {
+      throw new IllegalArgumentException("The value for the parameter parseBudget in DocumentParser mustn't be null.");
+    }
+    this.parseBudget = parseBudget;
+  }
+
+  /**
+   * Set the {@link TextEncoding} of the returned documents. Byte encodings
+   * need about half of the memory for Latin texts, the text is decoded on
+   * each access then.
+   * 
+   * @param textEncoding
+   *          - the {@link TextEncoding}
+   * @throws IllegalArgumentException
+   *           if the encoding is null.
+   */
+  public void setTextEncoding(final TextEncoding textEncoding) {
+    if (textEncoding == null) {
+      throw new IllegalArgumentException("The value for the parameter textEncoding in DocumentParser mustn't be null.");
+    }
+    this.textEncoding = textEncoding;
+  }
+
+  /**
+   * Set the {@link ParseWatchdog} which stops parsers exceeding the
+   * wall-clock time of the {@link ParseBudget}.
+   * 
+   * @param watchdog
+   *          - the {@link ParseWatchdog}
+   * @throws IllegalArgumentException
+   *           if the watchdog is null.
+   */
+  public void setWatchdog(final ParseWatchdog watchdog) {
+    if (watchdog == null) {
+      throw new IllegalArgumentException("The value for the parameter watchdog in DocumentParser mustn't be null.");
+    }
+    this.watchdog = watchdog;
+  }
+
+  /**
+   * Set the {@link IResourceReader} which opens the documents, e.g. a
+   * {@link ResourceReaderImpl} with a persistent {@link HttpValidatorStore}
+   * for {@link #parseIfModified(String)}.
+   * 
+   * @param resourceReader
+   *          - the {@link IResourceReader}
+   * @throws IllegalArgumentException
+   *           if the reader is null.
+   */
+  public void setResourceReader(final IResourceReader resourceReader) {
+    if (resourceReader == null) {
+      throw new IllegalArgumentException("The value for the parameter resourceReader in DocumentParser mustn't be null.");
+    }
+    this.resourceReader = resourceReader;
+  }
+
+  /**
+   * Set the number of parsed documents which are kept for
+   * {@link #parseIfModified(String)}. The cached documents are dropped.
+   * 
+   * @param capacity
+   *          - the maximum number of documents. 0 disables the cache.
+   * @throws IllegalArgumentException
+   *           if the capacity is negative.
+   */
+  public void setDocumentCacheCapacity(final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The value for the parameter capacity in DocumentParser mustn't be negative.");
+    }
+    this.documentCache = new DocumentCache(capacity);
   }
 
   /**
@@ -83,40 +250,631 @@ public class DocumentParser {
    * @param url
    *          - the URL to the document.
    * @return an {@link IDocument} containing the fulltext and maybe metadata for
-   *         the parsed document.
+   *         the parsed document. If the document exceeded the
+   *         {@link ParseBudget}, it's partial, see
+   *         {@link IDocument#getTruncationReason()}.
+   * @throws ParseBudgetExceededException
+   *           if the parser didn't return within the wall-clock time of the
+   *           {@link ParseBudget}.
    */
   public IDocument parse(final String url) throws ApplicationException {
-    ResourceParser parser = null;
+    IDocument result;
+    if (isEDoc(url) || isLocalFile(url)) {
+      ResourceParser parser = this.getParser(url);
+      result = (IDocument) this.watchdog.parse(parser, "", url, this.parseBudget);
+    } else {
+      result = this.parseStream(url, this.resourceReader.read(url));
+    }
 
+    if (result instanceof GeneralDocument) {
+      ((GeneralDocument) result).compact(this.textEncoding);
+    }
+    return result;
+  }
+
+  /**
+   * Parse a document only if it was modified since the last call for its URL.
+   * HTTP resources are requested with the validators (ETag, Last-Modified) of
+   * the last response, an unmodified resource isn't downloaded again. The
+   * validators are kept by the {@link IResourceReader}, see
+   * {@link #setResourceReader(IResourceReader)}. An eDoc is parsed again if its
+   * pdf file or its index.html was modified.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @return the parsed {@link IDocument}. If the document wasn't modified, the
+   *         document parsed before or null if it isn't cached (any more), e.g.
+   *         on the first call after a restart with a persistent
+   *         {@link HttpValidatorStore}.
+   * @throws ApplicationException
+   *           if there's no parser available for the type of resource or the
+   *           parsing failed. The document will be read again on the next
+   *           call.
+   */
+  public IDocument parseIfModified(final String url) throws ApplicationException {
     if (isEDoc(url)) {
-      parser = EdocParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_PDF)) {
-      parser = PdfParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_DOC)) {
-      parser = DocParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_ODT)) {
-      parser = OdfParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_XML)) {
-      parser = XmlParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_HTM) || getExtension(url).equals(EXT_HTML) || getExtension(url).equals(EXT_XHTML)) {
-      parser = HtmlParserImpl.getInstance();
-    } else if (getExtension(url).equals(EXT_TXT)) {
-      parser = TxtParserImpl.getInstance();
-    }
-
-    if (parser != null) {
-      IDocument result = (IDocument) parser.parse("", url);
-      return result;
-    } else {
-      throw new ApplicationException("There's no parser available for this type of resource: " + getExtension(url));
+      return this.parseEdocIfModified(url);
+    }
+    final InputStream modifiedInput = this.resourceReader.readIfModified(url);
+    if (modifiedInput == null) {
+      return this.documentCache.get(url);
+    }
+    final DocumentCache cache = this.documentCache;
+    cache.remove(url);
+    IDocument result;
+    try {
+      if (isLocalFile(url)) {
+        // local files are opened by their parsers
+        closeQuietly(modifiedInput);
+        result = this.parse(url);
+      } else {
+        result = this.parseStream(url, modifiedInput);
+        if (result instanceof GeneralDocument) {
+          ((GeneralDocument) result).compact(this.textEncoding);
+        }
+      }
+    } catch (ApplicationException e) {
+      this.resourceReader.invalidate(url);
+      throw e;
+    } catch (RuntimeException e) {
+      this.resourceReader.invalidate(url);
+      throw e;
+    }
+    cache.put(url, result);
+    return result;
+  }
+
+  /*
+   * An eDoc consists of its pdf file and its index.html with the frontdoor
+   * metadata. Both are requested conditionally, the eDoc is parsed again if
+   * either of them was modified. The validators of both are kept.
+   */
+  private IDocument parseEdocIfModified(final String url) throws ApplicationException {
+    final String indexUri = EdocParserImpl.getIndexUri(url);
+    final InputStream modifiedInput = this.resourceReader.readIfModified(url);
+    InputStream modifiedIndex = null;
+    try {
+      if (!indexUri.equals(url)) {
+        modifiedIndex = this.resourceReader.readIfModified(indexUri);
+      }
+    } catch (ApplicationException e) {
+      if (modifiedInput != null) {
+        closeQuietly(modifiedInput);
+        this.resourceReader.invalidate(url);
+      }
+      throw e;
+    }
+    // eDocs are opened by their parser
+    if (modifiedInput != null) {
+      closeQuietly(modifiedInput);
+    }
+    if (modifiedIndex != null) {
+      closeQuietly(modifiedIndex);
+    }
+    if (modifiedInput == null && modifiedIndex == null) {
+      return this.documentCache.get(url);
+    }
+    final DocumentCache cache = this.documentCache;
+    cache.remove(url);
+    IDocument result;
+    try {
+      result = this.parse(url);
+    } catch (ApplicationException e) {
+      this.resourceReader.invalidate(url);
+      this.resourceReader.invalidate(indexUri);
+      throw e;
+    } catch (RuntimeException e) {
+      this.resourceReader.invalidate(url);
+      this.resourceReader.invalidate(indexUri);
+      throw e;
+    }
+    cache.put(url, result);
+    return result;
+  }
+
+  private static void closeQuietly(final InputStream input) {
+    try {
+      input.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  /*
+   * The content type of a remote resource is detected from the first bytes of
+   * the opened stream, the parser reads them again from the buffer. The stream
+   * is closed.
+   */
+  private IDocument parseStream(final String url, final InputStream in) throws ApplicationException {
+    final InputStream input = new BufferedInputStream(in, ContentTypeDetector.HEADER_SIZE);
+    try {
+      ResourceParser parser = this.getParserForStream(url, input);
+      return (IDocument) this.watchdog.parse(parser, "", url, input, this.parseBudget);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Set the {@link ExecutorService} which runs the asynchronous parsing. The
+   * parsing mostly waits for I/O (eDoc index pages, HTTP downloads), so the
+   * executor may run far more threads than there are cores.
+   * 
+   * @param executor
+   *          - the {@link ExecutorService}. It isn't shut down by the parser.
+   * @throws IllegalArgumentException
+   *           if the executor is null.
+   */
+  public void setExecutor(final ExecutorService executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("The value for the parameter executor in DocumentParser mustn't be null.");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Parse any kind of document in another thread. The calling thread isn't
+   * blocked by the download or the parsing.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @return a {@link Future} of the {@link IDocument}. Its get()-method throws
+   *         an ExecutionException which wraps the {@link ApplicationException}
+   *         if the parsing failed.
+   */
+  public Future<IDocument> parseAsync(final String url) {
+    return this.parseAsync(url, null);
+  }
+
+  /**
+   * Parse any kind of document in another thread and notify a callback when
+   * it's done.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param callback
+   *          - the {@link IParseCallback} or null.
+   * @return a {@link Future} of the {@link IDocument}.
+   */
+  public Future<IDocument> parseAsync(final String url, final IParseCallback callback) {
+    return this.getExecutor().submit(new Callable<IDocument>() {
+      public IDocument call() throws ApplicationException {
+        final IDocument document;
+        try {
+          document = parse(url);
+        } catch (ApplicationException e) {
+          if (callback != null) {
+            callback.failed(url, e);
+          }
+          throw e;
+        } catch (RuntimeException e) {
+          if (callback != null) {
+            callback.failed(url, new ApplicationException("Problem while parsing file " + url + "  -- exception: " + e + "\n"));
+          }
+          throw e;
+        }
+        if (callback != null) {
+          callback.parsed(url, document);
+        }
+        return document;
+      }
+    });
+  }
+
+  /**
+   * Set the maximum number of documents which are parsed at the same time by
+   * {@link #parseAll(Collection)}, including the calling thread. The number of
+   * threads of the executor plus one is an upper bound as well.
+   * 
+   * @param batchParallelism
+   *          - the number of documents.
+   * @throws IllegalArgumentException
+   *           if the number is less than 1.
+   */
+  public void setBatchParallelism(final int batchParallelism) {
+    if (batchParallelism < 1) {
+      throw new IllegalArgumentException("The value for the parameter batchParallelism in DocumentParser must be positive.");
+    }
+    this.batchParallelism = batchParallelism;
+  }
+
+  /**
+   * Parse many documents in parallel. A failure doesn't stop the batch: each
+   * item gets its own {@link ParseResult} which holds either the document or
+   * the error.
+   * 
+   * The calling thread parses items as well, the other ones are parsed by the
+   * executor of {@link #parseAsync(String)}. So parseAll() may be called from
+   * an {@link IParseCallback} or another task of that executor, it doesn't
+   * wait for threads which aren't available.
+   * 
+   * @param urls
+   *          - the URLs to the documents.
+   * @return the {@link ParseResult}s in the order of the given URLs.
+   * @throws ApplicationException
+   *           if the calling thread was interrupted while waiting.
+   * @throws IllegalArgumentException
+   *           if the urls are null.
+   */
+  public List<ParseResult> parseAll(final Collection<String> urls) throws ApplicationException {
+    if (urls == null) {
+      throw new IllegalArgumentException("The value for the parameter urls in DocumentParser.parseAll() mustn't be null.");
+    }
+    final List<String> urlList = new ArrayList<String>(urls);
+    final ParseResult[] results = new ParseResult[urlList.size()];
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(urlList.size());
+    final Runnable worker = new Runnable() {
+      public void run() {
+        parseBatchItems(urlList, results, nextIndex, done);
+      }
+    };
+
+    // the calling thread is one of the workers, so the batch is finished even
+    // if the executor doesn't run the helpers, e.g. if parseAll() is called by
+    // one of its own threads
+    final ExecutorService batchExecutor = this.getExecutor();
+    final int helpers = Math.min(this.batchParallelism, urlList.size()) - 1;
+    for (int i = 0; i < helpers; i++) {
+      try {
+        batchExecutor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    worker.run();
+    try {
+      // only the items which were taken by running helpers are left
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApplicationException("The batch parsing was interrupted.");
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Set the maximum number of archive entries which are parsed at the same
+   * time by {@link #parseArchive(String)}. Each of them is held in the heap,
+   * so the number limits the memory as well.
+   * 
+   * @param archiveParallelism
+   *          - the number of entries.
+   * @throws IllegalArgumentException
+   *           if the number is less than 1.
+   */
+  public void setArchiveParallelism(final int archiveParallelism) {
+    if (archiveParallelism < 1) {
+      throw new IllegalArgumentException("The value for the parameter archiveParallelism in DocumentParser must be positive.");
+    }
+    this.archiveParallelism = archiveParallelism;
+  }
+
+  /**
+   * Set the maximum size of an archive entry. Larger entries aren't parsed by
+   * {@link #parseArchive(String)}, they get a failed {@link ParseResult}.
+   * 
+   * @param maxArchiveEntrySize
+   *          - the size in bytes.
+   * @throws IllegalArgumentException
+   *           if the size is less than 1.
+   */
+  public void setMaxArchiveEntrySize(final int maxArchiveEntrySize) {
+    if (maxArchiveEntrySize < 1) {
+      throw new IllegalArgumentException("The value for the parameter maxArchiveEntrySize in DocumentParser must be positive.");
+    }
+    this.maxArchiveEntrySize = maxArchiveEntrySize;
+  }
+
+  /**
+   * Check if the resource is an archive which can be parsed by
+   * {@link #parseArchive(String)}.
+   * 
+   * @param uri
+   *          - the resource's URI.
+   * @return true if the resource is a .zip or .tar.gz archive.
+   */
+  public boolean isArchive(final String uri) {
+    return ArchiveEntryReader.isArchive(ContentTypeDetector.getTypeByExtension(uri));
+  }
+
+  /**
+   * Parse each file of a .zip or .tar.gz archive. The archive is read as a
+   * stream, nothing is unpacked to the disk. The entries are parsed in
+   * parallel, see {@link #setArchiveParallelism(int)}, and each one gets its
+   * own {@link ParseResult}. The URL of an entry is qualified by the URL of the
+   * archive: "[archive URL]!/[path within the archive]".
+   * 
+   * @param url
+   *          - the URL to the archive.
+   * @return the {@link ParseResult}s in the order of the entries.
+   * @throws ApplicationException
+   *           if the resource isn't an archive or can't be read.
+   */
+  public List<ParseResult> parseArchive(final String url) throws ApplicationException {
+    final List<ParseResult> results = Collections.synchronizedList(new ArrayList<ParseResult>());
+    final int parallelism = this.archiveParallelism;
+    final Semaphore permits = new Semaphore(parallelism);
+    final ExecutorService archiveExecutor = this.getExecutor();
+
+    final InputStream input = new BufferedInputStream(this.resourceReader.read(url), ContentTypeDetector.HEADER_SIZE);
+    try {
+      final String contentType = ContentTypeDetector.detect(input, url);
+      if (!ArchiveEntryReader.isArchive(contentType)) {
+        throw new ApplicationException("The resource " + url + " isn't a .zip or .tar.gz archive: " + contentType);
+      }
+      final ArchiveEntryReader archive = ArchiveEntryReader.open(input, contentType);
+      String entryName;
+      while ((entryName = archive.nextEntry()) != null) {
+        final String entryUrl = url + "!/" + entryName;
+        final byte[] content = archive.readEntry(this.maxArchiveEntrySize);
+        final int index = results.size();
+        if (content == null) {
+          results.add(ParseResult.failure(entryUrl, new ApplicationException("The archive entry " + entryUrl + " is larger than " + this.maxArchiveEntrySize + " bytes.")));
+          continue;
+        }
+        results.add(null);
+        // the reading waits while too many entries are parsed
+        permits.acquire();
+        try {
+          archiveExecutor.execute(new Runnable() {
+            public void run() {
+              try {
+                results.set(index, parseEntrySafely(url, entryUrl, content));
+              } finally {
+                permits.release();
+              }
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          results.set(index, ParseResult.failure(entryUrl, new ApplicationException("The parsing of " + entryUrl + " was rejected: " + e.getMessage())));
+          permits.release();
+        }
+      }
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while reading file " + url + "  -- exception: " + e.getMessage() + "\n");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApplicationException("The parsing of the archive " + url + " was interrupted.");
+    } finally {
+      try {
+        // wait for the entries which are parsed still
+        permits.acquireUninterruptibly(parallelism);
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+    return new ArrayList<ParseResult>(results);
+  }
+
+  /*
+   * Parse an archive entry from the heap and catch all errors.
+   */
+  /*
+   * Take the next item of a batch until none is left.
+   */
+  private void parseBatchItems(final List<String> urls, final ParseResult[] results, final AtomicInteger nextIndex, final CountDownLatch done) {
+    for (int index = nextIndex.getAndIncrement(); index < urls.size(); index = nextIndex.getAndIncrement()) {
+      try {
+        results[index] = this.parseSafely(urls.get(index));
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+
+  private ParseResult parseEntrySafely(final String archiveUrl, final String entryUrl, final byte[] content) {
+    try {
+      final String contentType = ContentTypeDetector.detect(content, Math.min(content.length, ContentTypeDetector.HEADER_SIZE), entryUrl);
+      final ResourceParser parser = this.getParserForType(entryUrl, contentType);
+      final IDocument document = (IDocument) this.watchdog.parse(parser, archiveUrl, entryUrl, new ByteArrayInputStream(content), this.parseBudget);
+      if (document instanceof GeneralDocument) {
+        ((GeneralDocument) document).compact(this.textEncoding);
+      }
+      return ParseResult.success(entryUrl, document);
+    } catch (ApplicationException e) {
+      return ParseResult.failure(entryUrl, e);
+    } catch (RuntimeException e) {
+      return ParseResult.failure(entryUrl, new ApplicationException("Problem while parsing file " + entryUrl + "  -- exception: " + e + "\n"));
+    }
+  }
+
+  /*
+   * Parse a document and catch all errors.
+   */
+  private ParseResult parseSafely(final String url) {
+    try {
+      return ParseResult.success(url, this.parse(url));
+    } catch (ApplicationException e) {
+      return ParseResult.failure(url, e);
+    } catch (RuntimeException e) {
+      return ParseResult.failure(url, new ApplicationException("Problem while parsing file " + url + "  -- exception: " + e + "\n"));
+    }
+  }
+
+  private ExecutorService getExecutor() {
+    if (this.executor != null) {
+      return this.executor;
+    }
+    synchronized (DocumentParser.class) {
+      if (sharedExecutor == null) {
+        sharedExecutor = Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS, new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "document-parser-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+      return sharedExecutor;
+    }
+  }
+
+  /**
+   * Parse any kind of document and stream its text to a {@link Writer}, e.g.
+   * straight to an indexer. The text isn't kept in memory.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param sink
+   *          - the {@link Writer} which receives the text. It's flushed, but
+   *          not closed.
+   * @param charLimit
+   *          - the maximum number of characters or -1 for no limit.
+   * @return the number of characters written to the sink.
+   * @throws ApplicationException
+   *           if there's no parser available for the type of resource or the
+   *           parsing failed.
+   */
+  public long parseTo(final String url, final Writer sink, final int charLimit) throws ApplicationException {
+    if (isEDoc(url) || isLocalFile(url)) {
+      ResourceParser parser = this.getParser(url);
+      return parser.parseTo("", url, sink, charLimit);
+    }
+    // a remote resource is fetched once, its type is detected from the buffer
+    final InputStream input = new BufferedInputStream(this.resourceReader.read(url), ContentTypeDetector.HEADER_SIZE);
+    try {
+      ResourceParser parser = this.getParserForStream(url, input);
+      return parser.parseTo("", url, input, sink, charLimit);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Parse the metadata of any kind of document only. PDF files and eDocs are
+   * read without text extraction.
+   * 
+   * @throws ApplicationException
+   *           if there's no parser available for the type of resource.
+   * @param url
+   *          - the URL to the document.
+   * @return the {@link MetadataRecord} of the parsed document.
+   */
+  public MetadataRecord parseMetadata(final String url) throws ApplicationException {
+    if (isEDoc(url) || isLocalFile(url)) {
+      ResourceParser parser = this.getParser(url);
+      return parser.parseMetadata("", url);
+    }
+    // a remote resource is fetched once, its type is detected from the buffer
+    final InputStream input = new BufferedInputStream(this.resourceReader.read(url), ContentTypeDetector.HEADER_SIZE);
+    try {
+      ResourceParser parser = this.getParserForStream(url, input);
+      return parser.parseMetadata("", url, input);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /*
+   * Choose the parser for a document which is opened by the parser. eDocs are
+   * recognized by their folder structure, all other documents by their
+   * content type.
+   */
+  private ResourceParser getParser(final String url) throws ApplicationException {
+    if (isEDoc(url)) {
+      return ParserRegistry.getInstance().getParser(EdocParserImpl.class);
+    }
+    return this.getParserForType(url, this.detectContentType(url));
+  }
+
+  /*
+   * Choose the parser for a buffered stream by its first bytes. The stream is
+   * reset, so the parser reads them again.
+   */
+  private ResourceParser getParserForStream(final String url, final InputStream input) throws ApplicationException {
+    try {
+      return this.getParserForType(url, ContentTypeDetector.detect(input, url));
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while reading file " + url + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
+
+  private ResourceParser getParserForType(final String url, final String contentType) throws ApplicationException {
+    final ResourceParser parser = ParserRegistry.getInstance().getParserForType(contentType);
+    if (parser == null) {
+      if (ArchiveEntryReader.isArchive(contentType)) {
+        throw new ApplicationException("The resource " + url + " is an archive. Use DocumentParser.parseArchive() to parse its files.");
+      }
+      throw new ApplicationException("There's no parser available for this type of resource: " + (contentType != null ? contentType : url));
+    }
+    return parser;
+  }
+
+  /*
+   * Detect the content type from the first bytes of the resource. The result
+   * is cached as long as the resource isn't modified. Remote resources aren't
+   * detected here, they're parsed from the stream which was detected.
+   */
+  private String detectContentType(final String url) throws ApplicationException {
+    final long lastModified = this.resourceReader.getLastModified(url);
+    if (lastModified != 0) {
+      final String cachedType = CONTENT_TYPE_CACHE.get(url, lastModified);
+      if (cachedType != null) {
+        return cachedType;
+      }
+    }
+
+    final InputStream input = new BufferedInputStream(this.resourceReader.read(url), ContentTypeDetector.HEADER_SIZE);
+    try {
+      final String contentType = ContentTypeDetector.detect(input, url);
+      if (lastModified != 0 && contentType != null) {
+        CONTENT_TYPE_CACHE.put(url, lastModified, contentType);
+      }
+      return contentType;
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while reading file " + url + "  -- exception: " + e.getMessage() + "\n");
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
     }
   }
 
+  private static boolean isLocalFile(final String url) {
+    return new File(url).isFile();
+  }
+
   /**
    * Fetch the URI's extension.
+   * 
+   * @return the extension including the dot or an empty String if the URI
+   *         hasn't got an extension.
    */
   public String getExtension(final String uri) {
+    return getExtensionOf(uri);
+  }
+
+  /**
+   * Fetch the URI's extension.
+   * 
+   * @param uri
+   *          - the URI.
+   * @return the extension including the dot or an empty String if the URI
+   *         hasn't got an extension.
+   */
+  public static String getExtensionOf(final String uri) {
     final int extPos = uri.lastIndexOf(".");
+    if (extPos == -1 || extPos < uri.lastIndexOf('/') || extPos < uri.lastIndexOf('\\')) {
+      return "";
+    }
     final String extension = uri.substring(extPos, uri.length());
 
     return extension;
@@ -130,10 +888,8 @@ public class DocumentParser {
    * @return ture if the resource is an image.
    */
   public boolean isImage(String uri) {
-    if (getExtension(uri).equals(EXT_JPG) || getExtension(uri).equals(EXT_TIFF) || getExtension(uri).equals(EXT_PNG)) {
-      return true;
-    }
-    return false;
+    final String type = ContentTypeDetector.getTypeByExtension(uri);
+    return ContentTypeDetector.TYPE_JPEG.equals(type) || ContentTypeDetector.TYPE_TIFF.equals(type) || ContentTypeDetector.TYPE_PNG.equals(type);
   }
 
   /**
@@ -144,30 +900,6 @@ public class DocumentParser {
    * @return true if the resource is an (KOBV) eDoc.
    */
   public boolean isEDoc(String uri) {
-    // test local file system
-    File f = new File(uri);
-
-    if (f.getParentFile().getName().equals("pdf") && new File(f.getParentFile().getParentFile(), "index.html").exists()) {
-      return true;
-    } else { // test HTTP
-      try {
-        URL url = new URL(uri);
-        int pos = url.toExternalForm().lastIndexOf("/pdf");
-        if (pos != -1) {
-          String newUrl = url.toExternalForm().substring(0, pos) + "/index.html";
-
-          URL indexUrl = new URL(newUrl);
-          @SuppressWarnings("unused")
-          URLConnection conn = indexUrl.openConnection();
-
-          return true;
-        }
-        return false;
-      } catch (MalformedURLException e) {
-        return false;
-      } catch (IOException e) {
-        return false;
-      }
-    }
+    return EdocDetectionService.getInstance().isEDoc(uri);
   }
 }
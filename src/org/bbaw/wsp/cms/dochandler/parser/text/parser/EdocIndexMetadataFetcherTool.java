@@ -1,11 +1,7 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Scanner;
@@ -15,6 +11,7 @@ import java.util.regex.Pattern;
 import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 import org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader;
 import org.bbaw.wsp.cms.dochandler.parser.text.reader.ResourceReaderImpl;
+import org.bbaw.wsp.util.EdocDetectionService;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
 
@@ -187,30 +184,6 @@ public class EdocIndexMetadataFetcherTool {
    * @return true if the resource is an (KOBV) eDoc.
    */
   public static boolean isEDoc(String uri) {
-    // test local file system
-    File f = new File(uri);
-
-    if (f.getParentFile().getName().equals("pdf") && new File(f.getParentFile().getParentFile(), "index.html").exists()) {
-      return true;
-    } else { // test HTTP
-      try {
-        URL url = new URL(uri);
-        int pos = url.toExternalForm().lastIndexOf("/pdf");
-        if (pos != -1) {
-          String newUrl = url.toExternalForm().substring(0, pos) + "/index.html";
-
-          URL indexUrl = new URL(newUrl);
-          @SuppressWarnings("unused")
-          URLConnection conn = indexUrl.openConnection();
-
-          return true;
-        }
-        return false;
-      } catch (MalformedURLException e) {
-        return false;
-      } catch (IOException e) {
-        return false;
-      }
-    }
+    return EdocDetectionService.getInstance().isEDoc(uri);
   }
 }
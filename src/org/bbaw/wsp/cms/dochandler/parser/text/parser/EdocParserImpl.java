@@ -1,5 +1,7 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.ByteArrayInputStream;
+
 import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
 import org.bbaw.wsp.cms.dochandler.parser.document.PdfDocument;
 import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
@@ -25,9 +27,9 @@ public class EdocParserImpl extends HtmlParserImpl {
    * 
    * @return
    */
-  public static EdocParserImpl getInstance() {
+  public static synchronized EdocParserImpl getInstance() {
     if (instance == null) {
-      return new EdocParserImpl();
+      instance = new EdocParserImpl();
     }
     return instance;
   }
@@ -43,26 +45,36 @@ public class EdocParserImpl extends HtmlParserImpl {
    *          the URI where the harvesting was started.
    * @param uri
    *          the URI to the eDoc's index.html (which contains the reference to
-   *          the eDoc).
+   *          the eDoc) or to the pdf file in the eDoc's pdf folder.
+   * @param budget
+   *          the {@link ParseBudget} for the eDoc's pdf file.
    * 
    * @return Object returned by the {@link ISaveStrategy}
    * @throws ApplicationException
    */
-  public Object parse(final String startUri, final String uri) throws ApplicationException {
+  @Override
+  public Object parse(final String startUri, final String uri, final ParseBudget budget) throws ApplicationException {
+    final String indexUri = getIndexUri(uri);
+    // The index.html is read once: the buffer is parsed by Tika and searched
+    // for the metadata.
+    final byte[] index = EdocIndexMetadataFetcherTool.fetchIndex(indexUri);
+
     // Parse eDoc index
-    final Object parsedDocIndex = super.parse(startUri, uri);
+    final Object parsedDocIndex = super.parse(startUri, indexUri, new ByteArrayInputStream(index), ParseBudget.UNLIMITED);
 
     if (parsedDocIndex instanceof IDocument) {
       MetadataRecord metadata = new MetadataRecord();
 
-      EdocIndexMetadataFetcherTool.fetchHtmlDirectly(uri, metadata);
+      EdocIndexMetadataFetcherTool.fetchHtmlDirectly(indexUri, index, metadata);
 
-      String eDocUrl = metadata.getRealDocUrl();
+      // prefer the given pdf file, the link in the index.html refers to the
+      // eDoc server
+      String eDocUrl = indexUri.equals(uri) ? metadata.getRealDocUrl() : uri;
 
       if (eDocUrl != null) {
         // Parse eDoc
         System.out.println("eDocUrl: " + eDocUrl);
-        final Object parsedEDoc = PdfParserImpl.getInstance().parsePages(startUri, eDocUrl);
+        final Object parsedEDoc = PdfParserImpl.getInstance().parsePages(startUri, eDocUrl, budget);
         if (parsedEDoc instanceof PdfDocument) {
           final PdfDocument parsedPDF = (PdfDocument) parsedEDoc;
           parsedPDF.setMetadata(metadata);
@@ -71,13 +83,78 @@ public class EdocParserImpl extends HtmlParserImpl {
         }
       }
       else {
-        throw new ApplicationException("Couldn't fetch the eDoc's URL from the file: "+uri);
+        throw new ApplicationException("Couldn't fetch the eDoc's URL from the file: " + indexUri);
       }
     }
 
     return null;
   }
 
+  /**
+   * Stream the text of the eDoc's pdf file to the sink. The index.html is only
+   * read for the URL of the pdf file.
+   */
+  @Override
+  long streamText(final String startUri, final String uri, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    final String indexUri = getIndexUri(uri);
+    String eDocUrl = uri;
+    if (indexUri.equals(uri)) {
+      final MetadataRecord metadata = new MetadataRecord();
+      EdocIndexMetadataFetcherTool.fetchHtmlDirectly(indexUri, metadata);
+      eDocUrl = metadata.getRealDocUrl();
+    }
+    if (eDocUrl == null) {
+      throw new ApplicationException("Couldn't fetch the eDoc's URL from the file: " + uri);
+    }
+    return PdfParserImpl.getInstance().streamText(startUri, eDocUrl, sink, charLimit);
+  }
+
+  /**
+   * Parse the metadata of an eDoc only: the fields of the index.html and the
+   * page count and document information of the pdf file. The text isn't
+   * extracted.
+   * 
+   * @param startUri
+   *          the URI where the harvesting was started.
+   * @param uri
+   *          the URI to the eDoc's index.html or to the pdf file in the eDoc's
+   *          pdf folder.
+   * @return the {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the index.html or the pdf file can't get read.
+   */
+  public MetadataRecord parseMetadata(final String startUri, final String uri) throws ApplicationException {
+    final String indexUri = getIndexUri(uri);
+    MetadataRecord metadata = new MetadataRecord();
+
+    EdocIndexMetadataFetcherTool.fetchHtmlDirectly(indexUri, metadata);
+
+    // prefer the given pdf file, the link in the index.html refers to the
+    // eDoc server
+    final String eDocUrl = indexUri.equals(uri) ? metadata.getRealDocUrl() : uri;
+    if (eDocUrl == null) {
+      throw new ApplicationException("Couldn't fetch the eDoc's URL from the file: " + indexUri);
+    }
+    return PdfParserImpl.getInstance().parseMetadata(startUri, eDocUrl, metadata);
+  }
+
+  /**
+   * Return the URI to the eDoc's index.html.
+   * 
+   * @param uri
+   *          the URI to the eDoc's index.html or to the pdf file in the eDoc's
+   *          pdf folder.
+   * @return the URI to the index.html.
+   */
+  public static String getIndexUri(final String uri) {
+    final String normalizedUri = uri.replace('\\', '/');
+    final int pos = normalizedUri.lastIndexOf("/pdf/");
+    if (pos == -1) {
+      return uri;
+    }
+    return normalizedUri.substring(0, pos) + "/index.html";
+  }
+
   public static void main(String[] args) throws ApplicationException {
     EdocParserImpl eDocParser = new EdocParserImpl();
     String uri = "C:/Dokumente und Einstellungen/wsp-shk1/Eigene Dateien/opus32_bbaw_volltexte_20120607/volltexte/2006/1/index.html";
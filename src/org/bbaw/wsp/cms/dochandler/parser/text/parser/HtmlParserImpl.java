@@ -19,14 +19,15 @@ public class HtmlParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static HtmlParserImpl getInstance() {
+  public static synchronized HtmlParserImpl getInstance() {
     if (instance == null) {
-      return new HtmlParserImpl();
+      instance = new HtmlParserImpl();
     }
     return instance;
   }
 
-  private HtmlParserImpl() {
+  // Protected because this parser is extended by the EdocParserImpl
+  protected HtmlParserImpl() {
     super(new HtmlParser());
   }
 
@@ -0,0 +1,36 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * A callback is notified when an asynchronous parsing is done, see
+ * {@link DocumentParser#parseAsync(String, IParseCallback)}. The methods are
+ * called in the worker thread.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public interface IParseCallback {
+
+  /**
+   * The document was parsed.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param document
+   *          - the parsed {@link IDocument}.
+   */
+  void parsed(final String url, final IDocument document);
+
+  /**
+   * The parsing failed.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param e
+   *          - the {@link ApplicationException}.
+   */
+  void failed(final String url, final ApplicationException e);
+}
@@ -0,0 +1,29 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This interface receives the pages of a PDF document one by one while the
+ * {@link PdfParserImpl} strips them. A consumer may process (e.g. index) each
+ * page and drop it afterwards, so the whole document never has to be kept in
+ * memory.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public interface IPdfPageConsumer {
+
+  /**
+   * Consume a stripped page. The pages are delivered in ascending order.
+   * 
+   * @param page
+   *          - the {@link PdfPage} containing the page number and the page's
+   *          fulltext.
+   * @throws ApplicationException
+   *           if the consumer can't handle the page. The parsing will be
+   *           stopped.
+   */
+  void consumePage(final PdfPage page) throws ApplicationException;
+}
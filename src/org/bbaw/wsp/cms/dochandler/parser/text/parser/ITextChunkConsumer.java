@@ -0,0 +1,28 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * A consumer receives the text of a document in chunks while the document is
+ * parsed, see {@link ResourceParser#parseTo(String, String, ITextChunkConsumer, int)}.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public interface ITextChunkConsumer {
+
+  /**
+   * Receive the next chunk of text. The array is reused by the parser, so the
+   * consumer must copy the characters it wants to keep.
+   * 
+   * @param ch
+   *          - the characters.
+   * @param start
+   *          - the start position in the array.
+   * @param length
+   *          - the number of characters.
+   * @throws ApplicationException
+   *           if the consumer failed. The parsing is stopped then.
+   */
+  void consumeChunk(final char[] ch, final int start, final int length) throws ApplicationException;
+}
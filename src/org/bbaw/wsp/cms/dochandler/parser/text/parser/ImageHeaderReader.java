@@ -0,0 +1,531 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+
+/**
+ * This class reads the metadata of an image from the header of a JPEG, PNG or
+ * TIFF file. It only reads the stream forward until the pixel data starts and
+ * skips everything else, so even huge scans cost a few KB of I/O.
+ *
+ * The following fields are filled: width, height, date, creator, title,
+ * description and rights. They're taken from the Exif tags, the XMP packet or
+ * the PNG text chunks.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ * @date 18.10.2012
+ *
+ */
+final class ImageHeaderReader {
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // the longest segment or string which is read into the heap
+  private static final int MAX_VALUE_LENGTH = 1024 * 1024;
+  private static final int MAX_IFD_ENTRIES = 4096;
+
+  // JPEG markers
+  private static final int JPEG_SOS = 0xDA;
+  private static final int JPEG_EOI = 0xD9;
+  private static final int JPEG_APP1 = 0xE1;
+  private static final String EXIF_HEADER = "Exif\0\0";
+  private static final String XMP_HEADER = "http://ns.adobe.com/xap/1.0/\0";
+
+  // TIFF tags
+  private static final int TAG_IMAGE_WIDTH = 256;
+  private static final int TAG_IMAGE_LENGTH = 257;
+  private static final int TAG_IMAGE_DESCRIPTION = 270;
+  private static final int TAG_DATE_TIME = 306;
+  private static final int TAG_ARTIST = 315;
+  private static final int TAG_XMP = 700;
+  private static final int TAG_COPYRIGHT = 33432;
+  private static final int TAG_EXIF_IFD = 34665;
+  private static final int TAG_DATE_TIME_ORIGINAL = 36867;
+
+  // TIFF field types
+  private static final int TYPE_BYTE = 1;
+  private static final int TYPE_SHORT = 3;
+  private static final int TYPE_LONG = 4;
+  private static final int TYPE_UNDEFINED = 7;
+
+  private static final Pattern XMP_CREATOR = Pattern.compile("<dc:creator>.*?<rdf:li[^>]*>([^<]*)</rdf:li>", Pattern.DOTALL);
+  private static final Pattern XMP_TITLE = Pattern.compile("<dc:title>.*?<rdf:li[^>]*>([^<]*)</rdf:li>", Pattern.DOTALL);
+  private static final Pattern XMP_RIGHTS = Pattern.compile("<dc:rights>.*?<rdf:li[^>]*>([^<]*)</rdf:li>", Pattern.DOTALL);
+  private static final Pattern XMP_CREATE_DATE = Pattern.compile("xmp:CreateDate(?:=\"|>)([^\"<]+)");
+
+  private final InputStream input;
+  private final MetadataRecord record;
+  private long position;
+  private Date exifDate;
+  private Date xmpDate;
+
+  private ImageHeaderReader(final InputStream input, final MetadataRecord record) {
+    this.input = input;
+    this.record = record;
+  }
+
+  /**
+   * Read the metadata of an image.
+   *
+   * @param input
+   *          - the {@link InputStream} positioned at the start of the image.
+   *          It isn't closed.
+   * @param contentType
+   *          - the content type, one of {@link ContentTypeDetector#TYPE_JPEG},
+   *          {@link ContentTypeDetector#TYPE_PNG} or
+   *          {@link ContentTypeDetector#TYPE_TIFF}.
+   * @param record
+   *          - the {@link MetadataRecord} which gets filled.
+   * @throws IOException
+   *           if the stream can't be read or the header is broken.
+   * @throws IllegalArgumentException
+   *           if the content type isn't supported.
+   */
+  static void read(final InputStream input, final String contentType, final MetadataRecord record) throws IOException {
+    final ImageHeaderReader reader = new ImageHeaderReader(input, record);
+    if (ContentTypeDetector.TYPE_JPEG.equals(contentType)) {
+      reader.readJpeg();
+    } else if (ContentTypeDetector.TYPE_PNG.equals(contentType)) {
+      reader.readPng();
+    } else if (ContentTypeDetector.TYPE_TIFF.equals(contentType)) {
+      reader.readTiff();
+    } else {
+      throw new IllegalArgumentException("The content type " + contentType + " in ImageHeaderReader isn't supported.");
+    }
+    // the Exif date is the most reliable one
+    if (reader.exifDate != null) {
+      record.setDate(reader.exifDate);
+    } else if (reader.xmpDate != null) {
+      record.setDate(reader.xmpDate);
+    }
+  }
+
+  /*
+   * A JPEG consists of segments. The metadata segments (APPn) precede the
+   * frame header (SOFn) which tells the dimensions. The reading stops at the
+   * start of the scan.
+   */
+  private void readJpeg() throws IOException {
+    this.skipFully(2); // SOI
+    while (true) {
+      int marker = this.readByte();
+      if (marker != 0xFF) {
+        throw new IOException("Invalid JPEG marker at position " + (this.position - 1));
+      }
+      // markers may be padded by several 0xFF
+      do {
+        marker = this.readByte();
+      } while (marker == 0xFF);
+      if (marker == JPEG_SOS || marker == JPEG_EOI) {
+        return;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+        // markers without a length
+        continue;
+      }
+      final int length = this.readUnsignedShort(true) - 2;
+      if (length < 0) {
+        throw new IOException("Invalid JPEG segment length at position " + (this.position - 2));
+      }
+      if (isStartOfFrame(marker)) {
+        this.skipFully(1); // sample precision
+        this.record.setHeight(this.readUnsignedShort(true));
+        this.record.setWidth(this.readUnsignedShort(true));
+        this.skipFully(length - 5);
+      } else if (marker == JPEG_APP1) {
+        final byte[] segment = this.readBytes(length);
+        if (startsWith(segment, EXIF_HEADER)) {
+          final ImageHeaderReader exifReader = new ImageHeaderReader(new ByteArrayInputStream(segment, EXIF_HEADER.length(), segment.length - EXIF_HEADER.length()), this.record);
+          try {
+            exifReader.readTiff();
+          } catch (IOException e) {
+            // a broken Exif block doesn't make the image unreadable
+          }
+          this.exifDate = exifReader.exifDate;
+        } else if (startsWith(segment, XMP_HEADER)) {
+          this.readXmp(new String(segment, XMP_HEADER.length(), segment.length - XMP_HEADER.length(), UTF_8));
+        }
+      } else {
+        this.skipFully(length);
+      }
+    }
+  }
+
+  private static boolean isStartOfFrame(final int marker) {
+    // SOF0 - SOF15 without DHT (C4), JPG (C8) and DAC (CC)
+    return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+  }
+
+  /*
+   * A PNG consists of chunks. IHDR is the first one, the text chunks are read
+   * until the image data (IDAT) starts. Text chunks behind the image data are
+   * ignored.
+   */
+  private void readPng() throws IOException {
+    this.skipFully(8); // signature
+    while (true) {
+      final long length = this.readUnsignedInt(true);
+      final String type = new String(this.readBytes(4), ISO_8859_1);
+      if (type.equals("IDAT") || type.equals("IEND")) {
+        return;
+      }
+      if (type.equals("IHDR")) {
+        this.record.setWidth((int) this.readUnsignedInt(true));
+        this.record.setHeight((int) this.readUnsignedInt(true));
+        this.skipFully(length - 8);
+      } else if (type.equals("tEXt") && length <= MAX_VALUE_LENGTH) {
+        final byte[] data = this.readBytes((int) length);
+        final int separator = indexOf(data, 0, (byte) 0);
+        if (separator != -1) {
+          this.setPngText(new String(data, 0, separator, ISO_8859_1), new String(data, separator + 1, data.length - separator - 1, ISO_8859_1));
+        }
+      } else if (type.equals("iTXt") && length <= MAX_VALUE_LENGTH) {
+        this.readPngInternationalText(this.readBytes((int) length));
+      } else {
+        this.skipFully(length);
+      }
+      this.skipFully(4); // CRC
+    }
+  }
+
+  private void readPngInternationalText(final byte[] data) {
+    // keyword \0 compression flag, compression method, language \0 translated
+    // keyword \0 text
+    final int keywordEnd = indexOf(data, 0, (byte) 0);
+    if (keywordEnd == -1 || keywordEnd + 2 >= data.length || data[keywordEnd + 1] != 0) {
+      // compressed texts aren't supported
+      return;
+    }
+    final int languageEnd = indexOf(data, keywordEnd + 3, (byte) 0);
+    final int translatedKeywordEnd = languageEnd == -1 ? -1 : indexOf(data, languageEnd + 1, (byte) 0);
+    if (translatedKeywordEnd == -1) {
+      return;
+    }
+    final String keyword = new String(data, 0, keywordEnd, ISO_8859_1);
+    final String text = new String(data, translatedKeywordEnd + 1, data.length - translatedKeywordEnd - 1, UTF_8);
+    if (keyword.equals("XML:com.adobe.xmp")) {
+      this.readXmp(text);
+    } else {
+      this.setPngText(keyword, text);
+    }
+  }
+
+  private void setPngText(final String keyword, final String text) {
+    if (keyword.equals("Author")) {
+      this.record.setCreator(text);
+    } else if (keyword.equals("Title")) {
+      this.record.setTitle(text);
+    } else if (keyword.equals("Description")) {
+      this.record.setDescription(text);
+    } else if (keyword.equals("Copyright")) {
+      this.record.setRights(text);
+    } else if (keyword.equals("Creation Time") && this.xmpDate == null) {
+      this.xmpDate = parseDate(text);
+    }
+  }
+
+  /*
+   * The TIFF structure is read forward only: the values behind the IFD
+   * entries are collected and read in the order of their offsets. Values in
+   * front of the current position are ignored. This is used for TIFF files
+   * and the Exif block of a JPEG.
+   */
+  private void readTiff() throws IOException {
+    final int order1 = this.readByte();
+    final int order2 = this.readByte();
+    final boolean bigEndian;
+    if (order1 == 'M' && order2 == 'M') {
+      bigEndian = true;
+    } else if (order1 == 'I' && order2 == 'I') {
+      bigEndian = false;
+    } else {
+      throw new IOException("Invalid TIFF byte order.");
+    }
+    if (this.readUnsignedShort(bigEndian) != 42) {
+      throw new IOException("Invalid TIFF header.");
+    }
+
+    final PriorityQueue<TiffValue> pending = new PriorityQueue<TiffValue>(16, new Comparator<TiffValue>() {
+      public int compare(final TiffValue value1, final TiffValue value2) {
+        return value1.offset < value2.offset ? -1 : (value1.offset == value2.offset ? 0 : 1);
+      }
+    });
+    pending.add(new TiffValue(TAG_EXIF_IFD, TYPE_LONG, 0, this.readUnsignedInt(bigEndian)));
+    while (!pending.isEmpty()) {
+      final TiffValue value = pending.poll();
+      if (value.offset < this.position) {
+        continue;
+      }
+      this.skipFully(value.offset - this.position);
+      if (value.tag == TAG_EXIF_IFD) {
+        this.readIfd(bigEndian, pending);
+      } else {
+        final byte[] data = this.readBytes((int) value.count);
+        this.setTiffValue(value.tag, value.type, data, bigEndian);
+      }
+    }
+  }
+
+  private void readIfd(final boolean bigEndian, final PriorityQueue<TiffValue> pending) throws IOException {
+    final int entryCount = this.readUnsignedShort(bigEndian);
+    if (entryCount > MAX_IFD_ENTRIES) {
+      throw new IOException("Invalid TIFF directory with " + entryCount + " entries.");
+    }
+    for (int i = 0; i < entryCount; i++) {
+      final int tag = this.readUnsignedShort(bigEndian);
+      final int type = this.readUnsignedShort(bigEndian);
+      final long count = this.readUnsignedInt(bigEndian);
+      final byte[] valueField = this.readBytes(4);
+      if (!isSupportedTag(tag)) {
+        continue;
+      }
+      if (tag == TAG_EXIF_IFD) {
+        pending.add(new TiffValue(tag, type, 0, toUnsignedInt(valueField, 0, bigEndian)));
+        continue;
+      }
+      final int unitSize = type == TYPE_SHORT ? 2 : (type == TYPE_LONG ? 4 : 1);
+      final long length = count * unitSize;
+      if (length <= 4) {
+        this.setTiffValue(tag, type, valueField, bigEndian);
+      } else if (length <= MAX_VALUE_LENGTH) {
+        pending.add(new TiffValue(tag, type, length, toUnsignedInt(valueField, 0, bigEndian)));
+      }
+    }
+  }
+
+  private static boolean isSupportedTag(final int tag) {
+    switch (tag) {
+    case TAG_IMAGE_WIDTH:
+    case TAG_IMAGE_LENGTH:
+    case TAG_IMAGE_DESCRIPTION:
+    case TAG_DATE_TIME:
+    case TAG_ARTIST:
+    case TAG_XMP:
+    case TAG_COPYRIGHT:
+    case TAG_EXIF_IFD:
+    case TAG_DATE_TIME_ORIGINAL:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private void setTiffValue(final int tag, final int type, final byte[] data, final boolean bigEndian) {
+    switch (tag) {
+    case TAG_IMAGE_WIDTH:
+      this.record.setWidth(toNumber(data, type, bigEndian));
+      break;
+    case TAG_IMAGE_LENGTH:
+      this.record.setHeight(toNumber(data, type, bigEndian));
+      break;
+    case TAG_IMAGE_DESCRIPTION:
+      this.record.setTitle(toAscii(data));
+      break;
+    case TAG_ARTIST:
+      this.record.setCreator(toAscii(data));
+      break;
+    case TAG_COPYRIGHT:
+      this.record.setRights(toAscii(data));
+      break;
+    case TAG_DATE_TIME:
+      if (this.exifDate == null) {
+        this.exifDate = parseDate(toAscii(data));
+      }
+      break;
+    case TAG_DATE_TIME_ORIGINAL:
+      // the original date wins over the modification date
+      final Date original = parseDate(toAscii(data));
+      if (original != null) {
+        this.exifDate = original;
+      }
+      break;
+    case TAG_XMP:
+      if (type == TYPE_BYTE || type == TYPE_UNDEFINED) {
+        this.readXmp(new String(data, UTF_8));
+      }
+      break;
+    default:
+      break;
+    }
+  }
+
+  /*
+   * Only a few properties of the XMP packet are needed, so it isn't parsed as
+   * RDF. The Exif tags win over the XMP properties.
+   */
+  private void readXmp(final String xmp) {
+    if (this.record.getCreator() == null) {
+      this.record.setCreator(find(XMP_CREATOR, xmp));
+    }
+    if (this.record.getTitle() == null) {
+      this.record.setTitle(find(XMP_TITLE, xmp));
+    }
+    if (this.record.getRights() == null) {
+      this.record.setRights(find(XMP_RIGHTS, xmp));
+    }
+    final String createDate = find(XMP_CREATE_DATE, xmp);
+    if (createDate != null) {
+      this.xmpDate = parseDate(createDate);
+    }
+  }
+
+  private static String find(final Pattern pattern, final String text) {
+    final Matcher matcher = pattern.matcher(text);
+    if (matcher.find()) {
+      return matcher.group(1).trim();
+    }
+    return null;
+  }
+
+  /*
+   * Exif dates look like "2012:10:18 14:30:00", XMP and PNG dates like
+   * "2012-10-18T14:30:00+02:00". The time zone is ignored.
+   */
+  private static Date parseDate(final String value) {
+    if (value == null) {
+      return null;
+    }
+    final String normalized = value.trim().replace('T', ' ');
+    final String[] patterns = { "yyyy:MM:dd HH:mm:ss", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd" };
+    for (String pattern : patterns) {
+      if (normalized.length() < pattern.length()) {
+        continue;
+      }
+      final SimpleDateFormat format = new SimpleDateFormat(pattern);
+      format.setLenient(false);
+      try {
+        return format.parse(normalized.substring(0, pattern.length()));
+      } catch (ParseException e) {
+        // try the next pattern
+      }
+    }
+    return null;
+  }
+
+  private static int toNumber(final byte[] data, final int type, final boolean bigEndian) {
+    if (type == TYPE_SHORT) {
+      return bigEndian ? (data[0] & 0xFF) << 8 | (data[1] & 0xFF) : (data[1] & 0xFF) << 8 | (data[0] & 0xFF);
+    }
+    return (int) toUnsignedInt(data, 0, bigEndian);
+  }
+
+  private static String toAscii(final byte[] data) {
+    int length = indexOf(data, 0, (byte) 0);
+    if (length == -1) {
+      length = data.length;
+    }
+    final String value = new String(data, 0, length, ISO_8859_1).trim();
+    return value.isEmpty() ? null : value;
+  }
+
+  private static long toUnsignedInt(final byte[] data, final int offset, final boolean bigEndian) {
+    if (bigEndian) {
+      return (data[offset] & 0xFFL) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+    return (data[offset + 3] & 0xFFL) << 24 | (data[offset + 2] & 0xFF) << 16 | (data[offset + 1] & 0xFF) << 8 | (data[offset] & 0xFF);
+  }
+
+  private static int indexOf(final byte[] data, final int start, final byte value) {
+    for (int i = start; i < data.length; i++) {
+      if (data[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(final byte[] data, final String prefix) {
+    if (data.length < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (data[i] != (byte) prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int readByte() throws IOException {
+    final int value = this.input.read();
+    if (value == -1) {
+      throw new EOFException("Unexpected end of the image header at position " + this.position);
+    }
+    this.position++;
+    return value;
+  }
+
+  private int readUnsignedShort(final boolean bigEndian) throws IOException {
+    final byte[] data = this.readBytes(2);
+    return bigEndian ? (data[0] & 0xFF) << 8 | (data[1] & 0xFF) : (data[1] & 0xFF) << 8 | (data[0] & 0xFF);
+  }
+
+  private long readUnsignedInt(final boolean bigEndian) throws IOException {
+    return toUnsignedInt(this.readBytes(4), 0, bigEndian);
+  }
+
+  private byte[] readBytes(final int length) throws IOException {
+    if (length < 0 || length > MAX_VALUE_LENGTH) {
+      throw new IOException("Invalid length " + length + " in the image header at position " + this.position);
+    }
+    final byte[] data = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      final int count = this.input.read(data, offset, length - offset);
+      if (count == -1) {
+        throw new EOFException("Unexpected end of the image header at position " + this.position);
+      }
+      offset += count;
+    }
+    this.position += length;
+    return data;
+  }
+
+  private void skipFully(final long length) throws IOException {
+    if (length < 0) {
+      throw new IOException("Invalid length " + length + " in the image header at position " + this.position);
+    }
+    long remaining = length;
+    while (remaining > 0) {
+      final long skipped = this.input.skip(remaining);
+      if (skipped <= 0) {
+        // skip() may return 0 before the end, read() tells the truth
+        this.readByte();
+        remaining--;
+      } else {
+        remaining -= skipped;
+        this.position += skipped;
+      }
+    }
+  }
+
+  /*
+   * A value of an IFD entry which is stored behind the directory. A pending
+   * IFD uses the tag TAG_EXIF_IFD.
+   */
+  private static final class TiffValue {
+    private final int tag;
+    private final int type;
+    private final long count;
+    private final long offset;
+
+    private TiffValue(final int tag, final int type, final long count, final long offset) {
+      this.tag = tag;
+      this.type = type;
+      this.count = count;
+      this.offset = offset;
+    }
+  }
+}
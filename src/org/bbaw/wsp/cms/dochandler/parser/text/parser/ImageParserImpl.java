@@ -1,11 +1,23 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.apache.tika.parser.image.ImageParser;
+import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
 
 /**
  * This class parses an image. It uses the Singleton pattern. Only one instance
  * can exist.
  * 
+ * An image hasn't got a fulltext. Only the header and the Exif/XMP segments
+ * are read into a {@link MetadataRecord}, the pixel data is never decoded, see
+ * {@link ImageHeaderReader}.
+ * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 08.08.2012
  * 
@@ -19,9 +31,9 @@ public class ImageParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static ImageParserImpl getInstance() {
+  public static synchronized ImageParserImpl getInstance() {
     if (instance == null) {
-      return new ImageParserImpl();
+      instance = new ImageParserImpl();
     }
     return instance;
   }
@@ -30,4 +42,64 @@ public class ImageParserImpl extends ResourceParser {
     super(new ImageParser());
   }
 
+  /**
+   * Parse an image. The returned document has got an empty fulltext and the
+   * metadata of the image header. The budget isn't needed because the pixel
+   * data isn't read.
+   */
+  @Override
+  public Object parse(final String startUri, final String uri, final InputStream input, final ParseBudget budget) throws ApplicationException {
+    final MetadataRecord metadata = this.readHeader(uri, input);
+    final Object doc = this.saveStrategy.generateDocumentModel(startUri, uri, "");
+    if (doc instanceof IDocument) {
+      ((IDocument) doc).setMetadata(metadata);
+    }
+    return doc;
+  }
+
+  /**
+   * An image hasn't got any text.
+   */
+  @Override
+  long streamText(final String startUri, final String uri, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    return 0;
+  }
+
+  @Override
+  long streamText(final String startUri, final String uri, final InputStream input, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    return 0;
+  }
+
+  /**
+   * Read the metadata from the image header.
+   */
+  @Override
+  public MetadataRecord parseMetadata(final String startUri, final String uri, final InputStream input) throws ApplicationException {
+    return this.readHeader(uri, input);
+  }
+
+  private MetadataRecord readHeader(final String uri, final InputStream input) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parse() in ImageParserImpl mustn't be empty.");
+    }
+    if (input == null) {
+      throw new IllegalArgumentException("The value for the parameter input in the method parse() in ImageParserImpl mustn't be null.");
+    }
+    try {
+      // the format is told by the first bytes, not by the extension
+      final InputStream header = input.markSupported() ? input : new BufferedInputStream(input, ContentTypeDetector.HEADER_SIZE);
+      final String contentType = ContentTypeDetector.detect(header, uri);
+      if (!ContentTypeDetector.TYPE_JPEG.equals(contentType) && !ContentTypeDetector.TYPE_PNG.equals(contentType) && !ContentTypeDetector.TYPE_TIFF.equals(contentType)) {
+        throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: The image format " + contentType + " isn't supported.\n");
+      }
+
+      final MetadataRecord metadata = new MetadataRecord();
+      metadata.setUri(uri);
+      metadata.setType(contentType);
+      ImageHeaderReader.read(header, contentType, metadata);
+      return metadata;
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
 }
@@ -1,64 +1,241 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import org.apache.tika.sax.XHTMLContentHandler;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
 /**
- * This special implementation of a Tika {@link ContentHandler} finds footnotes
- * and adds them to a {@link TreeMap}.
- * 
+ * This special implementation of a {@link ContentHandler} finds footnotes
+ * and adds them to a {@link TreeMap}. It handles the SAX events of the
+ * content.xml of an OpenDocument text.
+ *
+ * The footnotes are found in a single pass: the handler is a state machine
+ * which follows the elements text:note (with text:note-class="footnote"),
+ * text:note-citation and text:note-body. If an {@link XHTMLContentHandler} is
+ * given, the text of the document is handed on to it, including the
+ * footnotes at the place of their citation.
+ *
  * @author Sascha Feldmann (wsp-shk1)
- * 
+ *
  * @date 18.09.2012
- * 
+ *
+ *       Last change: state machine instead of a regex on each element end
+ *
  */
 public class OdfHandler implements ContentHandler {
+  /**
+   * The namespace of the OpenDocument text elements.
+   */
+  public static final String TEXT_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+  private static final String TEXT_PREFIX = "text:";
 
-  private StringBuilder buildedString;
-  private TreeMap<Integer, String> footnotes;
+  /*
+   * The states of the machine. NOTE is the state within a footnote, but
+   * outside of its citation and body.
+   */
+  private enum State {
+    TEXT, NOTE, CITATION, BODY
+  }
+
+  private final TreeMap<Integer, String> footnotes;
+  private final XHTMLContentHandler xhtml;
+  private State state = State.TEXT;
+  private final StringBuilder citation = new StringBuilder();
+  private final StringBuilder body = new StringBuilder();
+  // depth of the open text:p and text:h elements outside of a footnote
+  private int paragraphDepth;
 
   /**
    * Create a new special OdfHandler who finds all footnotes and add those to a
    * (sorted) tree map.
-   * 
+   *
    * @param footnotes
    *          an {@link TreeMap} which the footnotes will be added to.
    */
   public OdfHandler(final TreeMap<Integer, String> footnotes) {
+    this(footnotes, null);
+  }
+
+  /**
+   * Create a new special OdfHandler who finds all footnotes and hands on the
+   * text of the document.
+   *
+   * @param footnotes
+   *          an {@link TreeMap} which the footnotes will be added to.
+   * @param xhtml
+   *          the {@link XHTMLContentHandler} which receives the text or null.
+   */
+  public OdfHandler(final TreeMap<Integer, String> footnotes, final XHTMLContentHandler xhtml) {
     if (footnotes == null) {
       throw new IllegalArgumentException("The value for the parameter footnotes in the constructor of OdfHandler mustn't be empty.");
     }
     this.footnotes = footnotes;
+    this.xhtml = xhtml;
+  }
+
+  /**
+   *
+   * @return the footnotes found so far. The key is the number of the citation.
+   */
+  public TreeMap<Integer, String> getFootnotes() {
+    return this.footnotes;
   }
 
   @Override
   public void characters(char[] ch, int start, int length) throws SAXException {
-    for (char c : ch) {
-      buildedString.append(c); // build to a string
+    if (this.state == State.CITATION) {
+      this.citation.append(ch, start, length);
+    } else if (this.state == State.BODY) {
+      this.body.append(ch, start, length);
+    } else if (this.state == State.NOTE) {
+      // whitespace between citation and body
+      return;
+    }
+    if (this.xhtml != null) {
+      this.xhtml.characters(ch, start, length);
     }
   }
 
   @Override
-  public void endDocument() throws SAXException {
-
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    final String name = getTextElementName(uri, localName, qName);
+    if (name == null) {
+      return;
+    }
+    if (this.state == State.TEXT) {
+      if (name.equals("note") && "footnote".equals(getTextAttribute(atts, "note-class"))) {
+        this.state = State.NOTE;
+        this.citation.setLength(0);
+        this.body.setLength(0);
+      } else if (name.equals("p") || name.equals("h")) {
+        if (this.paragraphDepth++ == 0 && this.xhtml != null) {
+          this.xhtml.startElement("p");
+        }
+      } else if (name.equals("note-citation") || name.equals("note-body")) {
+        // an endnote stays in the text
+        this.separateNote();
+      } else {
+        this.appendSpace(name, atts);
+      }
+    } else if (this.state == State.NOTE) {
+      if (name.equals("note-citation")) {
+        this.state = State.CITATION;
+      } else if (name.equals("note-body")) {
+        this.state = State.BODY;
+        this.separateNote();
+      }
+    } else if (this.state == State.BODY) {
+      if ((name.equals("p") || name.equals("h")) && this.body.length() > 0) {
+        // the paragraphs of a footnote are joined
+        this.body.append(' ');
+        if (this.xhtml != null) {
+          this.xhtml.characters(" ");
+        }
+      } else {
+        this.appendSpace(name, atts);
+      }
+    }
   }
 
   @Override
   public void endElement(String uri, String localName, String qName) throws SAXException {
-    // Find footnotes and put them to the map
-    final Pattern p = Pattern.compile("(?i)<text:note.*?text:note-class=\"footnote\".*?><text:note-citation>(.*?)</text:note-citation><text:note-body>(.*?)</text:note-body></text:note>");
-    // pattern
-    for (Matcher m = p.matcher(buildedString.toString()); m.find();) {
-      final int noteCitation = Integer.parseInt(m.group(1));
-      final String noteBody = m.group(2).replaceAll("<.*?>", "");
-      this.footnotes.put(noteCitation, noteBody);
+    final String name = getTextElementName(uri, localName, qName);
+    if (name == null) {
+      return;
+    }
+    if (this.state == State.CITATION && name.equals("note-citation")) {
+      this.state = State.NOTE;
+    } else if (this.state == State.BODY && name.equals("note-body")) {
+      this.state = State.NOTE;
+    } else if (this.state == State.NOTE && name.equals("note")) {
+      this.addFootnote();
+      this.state = State.TEXT;
+      this.separateNote();
+    } else if (this.state == State.TEXT && (name.equals("p") || name.equals("h")) && this.paragraphDepth > 0) {
+      if (--this.paragraphDepth == 0 && this.xhtml != null) {
+        this.xhtml.endElement("p");
+      }
+    }
+  }
+
+  private void addFootnote() {
+    Integer number;
+    try {
+      number = Integer.valueOf(this.citation.toString().trim());
+    } catch (NumberFormatException e) {
+      // a custom citation mark, e.g. "*", is numbered by its position
+      number = this.footnotes.isEmpty() ? 1 : this.footnotes.lastKey() + 1;
     }
+    this.footnotes.put(number, this.body.toString().trim());
+  }
+
+  /*
+   * The citation and the footnote are separated from the text around them.
+   */
+  private void separateNote() throws SAXException {
+    if (this.xhtml != null) {
+      this.xhtml.characters(" ");
+    }
+  }
+
+  /*
+   * The elements text:s, text:tab and text:line-break stand for whitespace.
+   */
+  private void appendSpace(final String name, final Attributes atts) throws SAXException {
+    String space = null;
+    if (name.equals("s")) {
+      final String count = getTextAttribute(atts, "c");
+      space = " ";
+      if (count != null) {
+        try {
+          final StringBuilder spaces = new StringBuilder();
+          for (int i = Math.min(Integer.parseInt(count), 1024); i > 0; i--) {
+            spaces.append(' ');
+          }
+          space = spaces.toString();
+        } catch (NumberFormatException e) {
+          // keep one space
+        }
+      }
+    } else if (name.equals("tab")) {
+      space = "\t";
+    } else if (name.equals("line-break")) {
+      space = "\n";
+    }
+    if (space != null) {
+      this.characters(space.toCharArray(), 0, space.length());
+    }
+  }
+
+  /*
+   * Return the local name of an element of the text namespace or null. The
+   * parser may be namespace aware or not.
+   */
+  private static String getTextElementName(final String uri, final String localName, final String qName) {
+    if (TEXT_NAMESPACE.equals(uri) && localName != null && !localName.isEmpty()) {
+      return localName;
+    }
+    if (qName != null && qName.startsWith(TEXT_PREFIX)) {
+      return qName.substring(TEXT_PREFIX.length());
+    }
+    return null;
+  }
+
+  private static String getTextAttribute(final Attributes atts, final String name) {
+    final String value = atts.getValue(TEXT_NAMESPACE, name);
+    if (value != null) {
+      return value;
+    }
+    return atts.getValue(TEXT_PREFIX + name);
+  }
+
+  @Override
+  public void endDocument() throws SAXException {
+
   }
 
   @Override
@@ -96,12 +273,6 @@ public class OdfHandler implements ContentHandler {
 
   }
 
-  @Override
-  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-    buildedString = new StringBuilder(); // we define a string builder for each
-                                         // element
-  }
-
   @Override
   public void startPrefixMapping(String prefix, String uri) throws SAXException {
     // TODO Auto-generated method stub
@@ -1,16 +1,56 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.tika.io.CloseShieldInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.odf.OpenDocumentParser;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.bbaw.wsp.cms.dochandler.parser.document.SpillingTextWriter;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 
 /**
  * The ODFParser. It uses the Singleton pattern. Only one instance can exist.
  * 
+ * The text is read from the content.xml of the document by an
+ * {@link OdfHandler}, which finds the footnotes in the same pass. The parsed
+ * document is an {@link org.bbaw.wsp.cms.dochandler.parser.document.OdfDocument}.
+ * The metadata is still parsed by Tika.
+ * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 08.08.2012
  * 
  */
 public class OdfParserImpl extends ResourceParser {
+  private static final String CONTENT_ENTRY = "content.xml";
   private static OdfParserImpl instance;
+  /*
+   * JAXP doesn't guarantee that a SAXParserFactory is thread-safe, so each
+   * thread which parses gets its own factory.
+   */
+  private static final ThreadLocal<SAXParserFactory> SAX_PARSER_FACTORY = new ThreadLocal<SAXParserFactory>() {
+    @Override
+    protected SAXParserFactory initialValue() {
+      final SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      try {
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      } catch (Exception e) {
+        // the parser doesn't support it
+      }
+      return factory;
+    }
+  };
 
   /**
    * Return the only existing instance. The instance uses an Apache TIKA
@@ -18,9 +58,9 @@ public class OdfParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static OdfParserImpl getInstance() {
+  public static synchronized OdfParserImpl getInstance() {
     if (instance == null) {
-      return new OdfParserImpl();
+      instance = new OdfParserImpl();
     }
     return instance;
   }
@@ -28,4 +68,43 @@ public class OdfParserImpl extends ResourceParser {
   private OdfParserImpl() {
     super(new OpenDocumentParser());
   }
+
+  /**
+   * Read the content.xml of the document. Everything before it is skipped,
+   * everything behind it isn't read.
+   */
+  @Override
+  protected void parseContent(final InputStream input, final ContentHandler textHandler, final Metadata metadata, final ParseContext context) throws Exception {
+    final XHTMLContentHandler xhtml = new XHTMLContentHandler(textHandler, metadata);
+    final OdfHandler odfHandler = new OdfHandler(new TreeMap<Integer, String>(), xhtml);
+    context.set(OdfHandler.class, odfHandler);
+
+    // the zip stream isn't closed, the input belongs to the caller
+    final ZipInputStream zip = new ZipInputStream(new CloseShieldInputStream(input));
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (entry.getName().equals(CONTENT_ENTRY)) {
+        xhtml.startDocument();
+        // neither the SAXParser nor its factory are shared between threads
+        final SAXParser saxParser = SAX_PARSER_FACTORY.get().newSAXParser();
+        saxParser.getXMLReader().setContentHandler(odfHandler);
+        saxParser.getXMLReader().parse(new InputSource(new CloseShieldInputStream(zip)));
+        xhtml.endDocument();
+        return;
+      }
+    }
+    throw new IOException("The document hasn't got a " + CONTENT_ENTRY + ".");
+  }
+
+  @Override
+  protected Object createDocumentModel(final String uri, final SpillingTextWriter text, final ParseContext context) throws IOException {
+    final OdfHandler odfHandler = context.get(OdfHandler.class);
+    if (odfHandler == null) {
+      return super.createDocumentModel(uri, text, context);
+    }
+    if (text.isSpilled()) {
+      return this.saveStrategy.generateDocumentModel(uri, uri, text.toSpilledText(), odfHandler.getFootnotes());
+    }
+    return this.saveStrategy.generateDocumentModel(uri, uri, text.toString(), odfHandler.getFootnotes());
+  }
 }
@@ -0,0 +1,108 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.util.PDFTextStripper;
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This special Apache PDFBox {@link PDFTextStripper} strips a whole PDF
+ * document in a single pass. It uses the page boundary hooks (startPage() and
+ * endPage()) to cut the output into pages and hands each page to an
+ * {@link IPdfPageConsumer}.
+ * 
+ * The text of a page is the same as the text returned by a stripper whose
+ * start and end page are set to that page, but the page tree is only walked
+ * once.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class PageBoundaryTextStripper extends PDFTextStripper {
+
+  private final StringWriter pageWriter;
+  private final IPdfPageConsumer consumer;
+
+  /**
+   * Create a new PageBoundaryTextStripper.
+   * 
+   * @param consumer
+   *          - the {@link IPdfPageConsumer} which receives the pages.
+   * @throws IOException
+   *           if the PDFBox resources can't get loaded.
+   * @throws IllegalArgumentException
+   *           if the consumer is null.
+   */
+  public PageBoundaryTextStripper(final IPdfPageConsumer consumer) throws IOException {
+    super();
+    if (consumer == null) {
+      throw new IllegalArgumentException("The value for the parameter consumer in the constructor of PageBoundaryTextStripper mustn't be null.");
+    }
+    this.consumer = consumer;
+    this.pageWriter = new StringWriter();
+  }
+
+  /**
+   * Strip all pages (within the start and end page) of the document and
+   * deliver them to the consumer.
+   * 
+   * @param document
+   *          - the opened {@link PDDocument}.
+   * @throws IOException
+   *           if PDFBox can't process the document.
+   * @throws ApplicationException
+   *           if the consumer failed.
+   */
+  public void stripPages(final PDDocument document) throws IOException, ApplicationException {
+    try {
+      this.writeText(document, this.pageWriter);
+    } catch (ConsumerException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  protected void startPage(final PDPage page) throws IOException {
+    super.startPage(page);
+    // drop everything that was written between two pages
+    this.output.flush();
+    this.pageWriter.getBuffer().setLength(0);
+  }
+
+  @Override
+  protected void endPage(final PDPage page) throws IOException {
+    super.endPage(page);
+    this.output.flush();
+    final StringBuffer buffer = this.pageWriter.getBuffer();
+    final String pageText = buffer.toString();
+    buffer.setLength(0);
+
+    try {
+      this.consumer.consumePage(new PdfPage(this.getCurrentPageNo(), pageText));
+    } catch (ApplicationException e) {
+      throw new ConsumerException(e);
+    }
+  }
+
+  /*
+   * Tunnels the consumer's ApplicationException through PDFBox which only
+   * declares IOExceptions.
+   */
+  private static class ConsumerException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ConsumerException(final ApplicationException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized ApplicationException getCause() {
+      return (ApplicationException) super.getCause();
+    }
+  }
+}
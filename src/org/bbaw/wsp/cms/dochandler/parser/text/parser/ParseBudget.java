@@ -0,0 +1,97 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+/**
+ * This class defines the resources a parser may spend on one document: a
+ * wall-clock time, a number of pages and a number of characters. A value of 0
+ * means that there's no limit. Instances are immutable.
+ * 
+ * The page limit applies to PDF documents only. The other formats aren't
+ * paginated while parsing, they're limited by the time and the characters.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class ParseBudget {
+  /**
+   * A budget without any limit.
+   */
+  public static final ParseBudget UNLIMITED = new ParseBudget(0, 0, 0);
+
+  private final long maxMillis;
+  private final int maxPages;
+  private final long maxChars;
+
+  /**
+   * Create a new ParseBudget.
+   * 
+   * @param maxMillis
+   *          - the wall-clock time in milliseconds or 0.
+   * @param maxPages
+   *          - the number of pages or 0. It's ignored for documents which
+   *          aren't PDF documents.
+   * @param maxChars
+   *          - the number of characters or 0.
+   * @throws IllegalArgumentException
+   *           if one of the values is negative.
+   */
+  public ParseBudget(final long maxMillis, final int maxPages, final long maxChars) {
+    if (maxMillis < 0 || maxPages < 0 || maxChars < 0) {
+      throw new IllegalArgumentException("The values for the parameters in the constructor of ParseBudget mustn't be negative.");
+    }
+    this.maxMillis = maxMillis;
+    this.maxPages = maxPages;
+    this.maxChars = maxChars;
+  }
+
+  /**
+   * 
+   * @return the wall-clock time in milliseconds or 0 if there's no limit.
+   */
+  public long getMaxMillis() {
+    return this.maxMillis;
+  }
+
+  /**
+   * 
+   * @return the number of pages or 0 if there's no limit. Only PDF documents
+   *         are limited by it.
+   */
+  public int getMaxPages() {
+    return this.maxPages;
+  }
+
+  /**
+   * 
+   * @return the number of characters or 0 if there's no limit.
+   */
+  public long getMaxChars() {
+    return this.maxChars;
+  }
+
+  /**
+   * 
+   * @return true if the budget has no limit at all.
+   */
+  public boolean isUnlimited() {
+    return this.maxMillis == 0 && this.maxPages == 0 && this.maxChars == 0;
+  }
+
+  /**
+   * Check if the time is over.
+   * 
+   * @param startTime
+   *          - the start of the parsing (System.currentTimeMillis()).
+   * @return the reason if the time is over or null.
+   */
+  public String checkTime(final long startTime) {
+    if (this.maxMillis > 0 && System.currentTimeMillis() - startTime > this.maxMillis) {
+      return "The wall-clock budget of " + this.maxMillis + " ms was exceeded.";
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseBudget [maxMillis=" + maxMillis + ", maxPages=" + maxPages + ", maxChars=" + maxChars + "]";
+  }
+}
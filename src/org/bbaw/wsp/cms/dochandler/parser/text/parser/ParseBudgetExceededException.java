@@ -0,0 +1,23 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This exception is thrown if a parser exceeded its {@link ParseBudget}.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class ParseBudgetExceededException extends ApplicationException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Create a new ParseBudgetExceededException.
+   * 
+   * @param reason
+   *          - the limit which was exceeded.
+   */
+  public ParseBudgetExceededException(final String reason) {
+    super(reason);
+  }
+}
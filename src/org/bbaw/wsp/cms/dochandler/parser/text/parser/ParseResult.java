@@ -0,0 +1,107 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * The result of parsing one item of a batch, see
+ * {@link DocumentParser#parseAll(java.util.Collection)}. It holds either the
+ * parsed {@link IDocument} or the error. Instances are immutable.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public final class ParseResult {
+
+  private final String url;
+  private final IDocument document;
+  private final ApplicationException error;
+
+  private ParseResult(final String url, final IDocument document, final ApplicationException error) {
+    this.url = url;
+    this.document = document;
+    this.error = error;
+  }
+
+  /**
+   * Create the result of a successful parsing.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param document
+   *          - the parsed {@link IDocument}.
+   * @return the {@link ParseResult}
+   */
+  public static ParseResult success(final String url, final IDocument document) {
+    return new ParseResult(url, document, null);
+  }
+
+  /**
+   * Create the result of a failed parsing.
+   * 
+   * @param url
+   *          - the URL to the document.
+   * @param error
+   *          - the {@link ApplicationException}.
+   * @return the {@link ParseResult}
+   */
+  public static ParseResult failure(final String url, final ApplicationException error) {
+    return new ParseResult(url, null, error);
+  }
+
+  /**
+   * 
+   * @return the URL to the document.
+   */
+  public String getUrl() {
+    return this.url;
+  }
+
+  /**
+   * 
+   * @return true if the document was parsed. It may be partial nevertheless,
+   *         see {@link IDocument#getTruncationReason()}.
+   */
+  public boolean isSuccess() {
+    return this.error == null;
+  }
+
+  /**
+   * 
+   * @return the parsed {@link IDocument} or null if the parsing failed.
+   */
+  public IDocument getDocument() {
+    return this.document;
+  }
+
+  /**
+   * 
+   * @return the {@link ApplicationException} or null if the parsing succeeded.
+   */
+  public ApplicationException getError() {
+    return this.error;
+  }
+
+  /**
+   * 
+   * @return the error message or null if the parsing succeeded.
+   */
+  public String getErrorMessage() {
+    return this.error != null ? this.error.getMessage() : null;
+  }
+
+  /**
+   * 
+   * @return true if the parsing was given up because it exceeded its
+   *         {@link ParseBudget}.
+   */
+  public boolean isBudgetExceeded() {
+    return this.error instanceof ParseBudgetExceededException;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseResult [url=" + url + ", success=" + isSuccess() + (error != null ? ", error=" + error.getMessage() : "") + "]";
+  }
+}
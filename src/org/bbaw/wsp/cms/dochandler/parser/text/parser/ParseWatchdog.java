@@ -0,0 +1,196 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.GeneralDocument;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * The watchdog runs a parser in a worker thread and gives up on the document
+ * if the parser doesn't return within the wall-clock time of its
+ * {@link ParseBudget}.
+ * 
+ * The parsers check the budget themselves (at the page boundaries of a PDF
+ * document, on each SAX event of a Tika parser) and return a partial document
+ * then. The watchdog waits {@link #GRACE_MILLIS} longer, so it only catches
+ * parsers which hang inside a single page or while loading the document. The
+ * worker thread is interrupted, but neither PDFBox nor Tika react to
+ * interrupts, so it may keep running in the background until the parser
+ * returns. The default worker threads are daemon threads for that reason.
+ * A document which such a parser returns after all is disposed, nobody owns
+ * its temporary file.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class ParseWatchdog {
+  /**
+   * Time in milliseconds the watchdog waits longer than the budget allows.
+   */
+  public static final long GRACE_MILLIS = 2000;
+
+  /*
+   * Default worker threads, shared by all watchdogs.
+   */
+  private static final ExecutorService SHARED_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(final Runnable r) {
+      Thread thread = new Thread(r, "parse-watchdog-" + this.count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final ExecutorService executor;
+
+  /**
+   * Create a new ParseWatchdog which uses shared daemon worker threads.
+   */
+  public ParseWatchdog() {
+    this(SHARED_EXECUTOR);
+  }
+
+  /**
+   * Create a new ParseWatchdog.
+   * 
+   * @param executor
+   *          - the {@link ExecutorService} which runs the parsers.
+   * @throws IllegalArgumentException
+   *           if the executor is null.
+   */
+  public ParseWatchdog(final ExecutorService executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("The value for the parameter executor in the constructor of ParseWatchdog mustn't be null.");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Parse a document within the given budget. Without a wall-clock limit the
+   * parser is called in the current thread.
+   * 
+   * @param parser
+   *          - the {@link ResourceParser}.
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param budget
+   *          - the {@link ParseBudget}.
+   * @return the object returned by the parser. It may be a partial document,
+   *         see {@link org.bbaw.wsp.cms.dochandler.parser.document.IDocument#getTruncationReason()}
+   * @throws ParseBudgetExceededException
+   *           if the parser didn't return in time.
+   * @throws ApplicationException
+   *           if the parser failed.
+   */
+  public Object parse(final ResourceParser parser, final String startUri, final String uri, final ParseBudget budget) throws ApplicationException {
+    if (budget.getMaxMillis() == 0) {
+      return parser.parse(startUri, uri, budget);
+    }
+    return this.run(new Callable<Object>() {
+      public Object call() throws Exception {
+        return parser.parse(startUri, uri, budget);
+      }
+    }, uri, budget);
+  }
+
+  /**
+   * Parse a document from a stream within the given budget. If the parser is
+   * given up, the caller should close the stream: that makes most parsers
+   * stop with an exception.
+   * 
+   * @param parser
+   *          - the {@link ResourceParser}.
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param input
+   *          - the {@link InputStream} of the document. It isn't closed.
+   * @param budget
+   *          - the {@link ParseBudget}.
+   * @return the object returned by the parser.
+   * @throws ParseBudgetExceededException
+   *           if the parser didn't return in time.
+   * @throws ApplicationException
+   *           if the parser failed.
+   */
+  public Object parse(final ResourceParser parser, final String startUri, final String uri, final InputStream input, final ParseBudget budget) throws ApplicationException {
+    if (budget.getMaxMillis() == 0) {
+      return parser.parse(startUri, uri, input, budget);
+    }
+    return this.run(new Callable<Object>() {
+      public Object call() throws Exception {
+        return parser.parse(startUri, uri, input, budget);
+      }
+    }, uri, budget);
+  }
+
+  private Object run(final Callable<Object> task, final String uri, final ParseBudget budget) throws ApplicationException {
+    final AtomicBoolean givenUp = new AtomicBoolean();
+    final Future<Object> future = this.executor.submit(new Callable<Object>() {
+      public Object call() throws Exception {
+        final Object result = task.call();
+        if (givenUp.get()) {
+          dispose(result);
+        }
+        return result;
+      }
+    });
+    try {
+      return future.get(budget.getMaxMillis() + GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      giveUp(future, givenUp);
+      throw new ParseBudgetExceededException("The parsing of " + uri + " was given up. The wall-clock budget of " + budget.getMaxMillis() + " ms was exceeded.");
+    } catch (InterruptedException e) {
+      giveUp(future, givenUp);
+      Thread.currentThread().interrupt();
+      throw new ApplicationException("Parsing of file " + uri + " was interrupted.");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ApplicationException) {
+        throw (ApplicationException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + cause + "\n");
+    }
+  }
+
+  /*
+   * Cancel the parser. If it returned in the meantime, its document is
+   * disposed here, otherwise by the worker thread when it returns.
+   */
+  private static void giveUp(final Future<Object> future, final AtomicBoolean givenUp) {
+    givenUp.set(true);
+    if (!future.cancel(true) && !future.isCancelled()) {
+      try {
+        dispose(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // no document
+      }
+    }
+  }
+
+  private static void dispose(final Object result) {
+    if (result instanceof GeneralDocument) {
+      ((GeneralDocument) result).dispose();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The registry hands out the only instance of each {@link ResourceParser}. The
+ * instances are created on the first lookup (or by {@link #warmUp()}) and
+ * reused by all threads afterwards, so a parsing doesn't create a new Tika
+ * parser, {@link org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader}
+ * and {@link DocumentModelStrategy} per document any more.
+ * 
+ * The counters {@link #getLookupCount()} and {@link #getAllocationCount()}
+ * show how many parser instances were saved.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public final class ParserRegistry {
+  private static final ParserRegistry INSTANCE = new ParserRegistry();
+
+  /*
+   * The parser classes known by the registry.
+   */
+  private static final Class<?>[] PARSER_CLASSES = { PdfParserImpl.class, EdocParserImpl.class, DocParserImpl.class, OdfParserImpl.class, XmlParserImpl.class, HtmlParserImpl.class, TxtParserImpl.class, ImageParserImpl.class };
+
+  /*
+   * The parser class for each content type, see ContentTypeDetector.
+   */
+  private static final Map<String, Class<? extends ResourceParser>> PARSERS_BY_TYPE;
+
+  static {
+    Map<String, Class<? extends ResourceParser>> types = new HashMap<String, Class<? extends ResourceParser>>();
+    types.put(ContentTypeDetector.TYPE_PDF, PdfParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_DOC, DocParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_ODT, OdfParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_XML, XmlParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_HTML, HtmlParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_XHTML, HtmlParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_TXT, TxtParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_JPEG, ImageParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_PNG, ImageParserImpl.class);
+    types.put(ContentTypeDetector.TYPE_TIFF, ImageParserImpl.class);
+    PARSERS_BY_TYPE = Collections.unmodifiableMap(types);
+  }
+
+  private final ConcurrentMap<Class<?>, ResourceParser> parsers = new ConcurrentHashMap<Class<?>, ResourceParser>();
+  private final AtomicLong lookups = new AtomicLong();
+
+  /**
+   * 
+   * @return the only existing registry.
+   */
+  public static ParserRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  private ParserRegistry() {
+  }
+
+  /**
+   * Create all parsers, so the first documents don't pay for the creation of
+   * the Tika parsers.
+   */
+  public void warmUp() {
+    for (Class<?> parserClass : PARSER_CLASSES) {
+      this.lookup(parserClass);
+    }
+  }
+
+  /**
+   * Return the only instance of a parser.
+   * 
+   * @param parserClass
+   *          - the class of the parser, e.g. PdfParserImpl.class
+   * @return the parser.
+   * @throws IllegalArgumentException
+   *           if the registry doesn't know the parser class.
+   */
+  public <T extends ResourceParser> T getParser(final Class<T> parserClass) {
+    this.lookups.incrementAndGet();
+    return parserClass.cast(this.lookup(parserClass));
+  }
+
+  /**
+   * Return the parser for a content type.
+   * 
+   * @param contentType
+   *          - the content type, see {@link ContentTypeDetector}.
+   * @return the parser or null if there's no parser for the type.
+   */
+  public ResourceParser getParserForType(final String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    final Class<? extends ResourceParser> parserClass = PARSERS_BY_TYPE.get(contentType);
+    if (parserClass == null) {
+      return null;
+    }
+    return this.getParser(parserClass);
+  }
+
+  /**
+   * 
+   * @return the number of calls of {@link #getParser(Class)}.
+   */
+  public long getLookupCount() {
+    return this.lookups.get();
+  }
+
+  /**
+   * 
+   * @return the number of {@link ResourceParser} instances created so far.
+   */
+  public long getAllocationCount() {
+    return ResourceParser.getAllocationCount();
+  }
+
+  private ResourceParser lookup(final Class<?> parserClass) {
+    ResourceParser parser = this.parsers.get(parserClass);
+    if (parser == null) {
+      parser = createParser(parserClass);
+      final ResourceParser existing = this.parsers.putIfAbsent(parserClass, parser);
+      if (existing != null) {
+        parser = existing;
+      }
+    }
+    return parser;
+  }
+
+  /*
+   * The getInstance() methods are synchronized, so each parser is created only
+   * once even if two threads look it up for the first time.
+   */
+  private static ResourceParser createParser(final Class<?> parserClass) {
+    if (parserClass == PdfParserImpl.class) {
+      return PdfParserImpl.getInstance();
+    } else if (parserClass == EdocParserImpl.class) {
+      return EdocParserImpl.getInstance();
+    } else if (parserClass == DocParserImpl.class) {
+      return DocParserImpl.getInstance();
+    } else if (parserClass == OdfParserImpl.class) {
+      return OdfParserImpl.getInstance();
+    } else if (parserClass == XmlParserImpl.class) {
+      return XmlParserImpl.getInstance();
+    } else if (parserClass == HtmlParserImpl.class) {
+      return HtmlParserImpl.getInstance();
+    } else if (parserClass == TxtParserImpl.class) {
+      return TxtParserImpl.getInstance();
+    } else if (parserClass == ImageParserImpl.class) {
+      return ImageParserImpl.getInstance();
+    }
+    throw new IllegalArgumentException("There's no parser registered for the class " + parserClass.getName());
+  }
+
+  @Override
+  public String toString() {
+    return "ParserRegistry [lookups=" + getLookupCount() + ", allocations=" + getAllocationCount() + "]";
+  }
+}
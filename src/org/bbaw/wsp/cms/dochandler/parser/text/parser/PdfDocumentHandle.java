@@ -0,0 +1,183 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.pdfbox.io.RandomAccessFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This class opens a {@link PDDocument} from a file and keeps all resources
+ * which belong to it: the PDFBox scratch file which holds the decoded streams
+ * instead of the heap and, for remote resources, the temporary file the
+ * download was spooled to. {@link #close()} releases all of them.
+ * 
+ * The document itself is loaded on the first call of {@link #getDocument()},
+ * so the file can be used (e.g. hashed) without running PDFBox.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class PdfDocumentHandle implements Closeable {
+  private static final String TEMP_PREFIX = "wsp-pdf";
+
+  private final File pdfFile;
+  private final boolean spooled;
+  private File scratchFile;
+  private RandomAccessFile scratch;
+  private PDDocument document;
+
+  private PdfDocumentHandle(final File pdfFile, final boolean spooled) {
+    this.pdfFile = pdfFile;
+    this.spooled = spooled;
+  }
+
+  /**
+   * Open a PDF document. Local files are read directly, all other resources
+   * are spooled to a temporary file first.
+   * 
+   * @param reader
+   *          - the {@link IResourceReader} for remote resources.
+   * @param uri
+   *          - the URI to the document.
+   * @return the opened handle. The caller must close it.
+   * @throws ApplicationException
+   *           if the document can't get read.
+   */
+  static PdfDocumentHandle open(final IResourceReader reader, final String uri) throws ApplicationException {
+    final File localFile = new File(uri);
+    if (localFile.isFile()) {
+      return open(localFile);
+    }
+
+    final InputStream input = reader.read(uri);
+    try {
+      return open(input, uri);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Open a PDF document from a stream. The stream is spooled to a temporary
+   * file, it isn't closed.
+   * 
+   * @param input
+   *          - the {@link InputStream} of the document.
+   * @param uri
+   *          - the URI to the document.
+   * @return the opened handle. The caller must close it.
+   * @throws ApplicationException
+   *           if the stream can't get read.
+   */
+  static PdfDocumentHandle open(final InputStream input, final String uri) throws ApplicationException {
+    File spoolFile = null;
+    try {
+      spoolFile = File.createTempFile(TEMP_PREFIX, ".pdf");
+      Files.copy(input, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      delete(spoolFile);
+      throw new ApplicationException("Problem while downloading file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    }
+    return open(spoolFile, true);
+  }
+
+  /**
+   * Open a local PDF file.
+   * 
+   * @param pdfFile
+   *          - the PDF {@link File}.
+   * @return the opened handle. The caller must close it.
+   * @throws ApplicationException
+   *           if the document can't get read.
+   */
+  static PdfDocumentHandle open(final File pdfFile) throws ApplicationException {
+    return open(pdfFile, false);
+  }
+
+  private static PdfDocumentHandle open(final File pdfFile, final boolean spooled) throws ApplicationException {
+    if (!pdfFile.isFile()) {
+      throw new ApplicationException("Problem while opening file " + pdfFile + "  -- exception: file doesn't exist\n");
+    }
+    return new PdfDocumentHandle(pdfFile, spooled);
+  }
+
+  /**
+   * Return the document. It's loaded on the first call.
+   * 
+   * @return the opened {@link PDDocument}.
+   * @throws ApplicationException
+   *           if the document can't get loaded.
+   */
+  PDDocument getDocument() throws ApplicationException {
+    if (this.document == null) {
+      try {
+        this.scratchFile = File.createTempFile(TEMP_PREFIX, ".scratch");
+        this.scratch = new RandomAccessFile(this.scratchFile, "rw");
+        this.document = PDDocument.load(this.pdfFile, this.scratch);
+      } catch (IOException e) {
+        this.close();
+        throw new ApplicationException("Problem while opening file " + this.pdfFile + "  -- exception: " + e.getMessage() + "\n");
+      }
+    }
+    return this.document;
+  }
+
+  /**
+   * 
+   * @return the local file the document was loaded from. For remote
+   *         resources, it's the spooled copy which lives until the handle is
+   *         closed.
+   */
+  File getFile() {
+    return this.pdfFile;
+  }
+
+  /**
+   * Close the document and delete the scratch file and the spooled copy.
+   * Errors while closing are ignored. It's safe to call this method more than
+   * once.
+   */
+  public void close() {
+    try {
+      if (this.document != null) {
+        this.document.close();
+      }
+    } catch (IOException e) {
+      // ignore
+    } finally {
+      this.document = null;
+    }
+    try {
+      if (this.scratch != null) {
+        this.scratch.close();
+      }
+    } catch (IOException e) {
+      // ignore
+    } finally {
+      this.scratch = null;
+    }
+    delete(this.scratchFile);
+    this.scratchFile = null;
+    if (this.spooled) {
+      delete(this.pdfFile);
+    }
+  }
+
+  private static void delete(final File file) {
+    if (file != null && file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+}
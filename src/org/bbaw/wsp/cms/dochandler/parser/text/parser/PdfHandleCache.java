@@ -0,0 +1,158 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This class keeps a bounded number of {@link PdfDocumentHandle}s open, so the
+ * pages of lazy documents can be extracted without opening the document again
+ * for each page. If the limit is exceeded, the least recently used handle is
+ * closed as soon as nobody uses it.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class PdfHandleCache {
+
+  private final int maxHandles;
+  private final LinkedHashMap<String, Entry> entries;
+  // evicted handles which are still in use, closed by the last release
+  private final Map<PdfDocumentHandle, Entry> pendingClose = new IdentityHashMap<PdfDocumentHandle, Entry>();
+
+  /**
+   * Create a new PdfHandleCache.
+   * 
+   * @param maxHandles
+   *          - the maximum number of open handles.
+   */
+  PdfHandleCache(final int maxHandles) {
+    if (maxHandles < 1) {
+      throw new IllegalArgumentException("The value for the parameter maxHandles in the constructor of PdfHandleCache must be positive.");
+    }
+    this.maxHandles = maxHandles;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true); // access
+                                                                      // order
+  }
+
+  /**
+   * Return the handle for a URI. The caller must call
+   * {@link #release(PdfDocumentHandle)} when he's done.
+   * 
+   * @param reader
+   *          - the {@link IResourceReader} for remote resources.
+   * @param uri
+   *          - the URI to the document.
+   * @return the {@link PdfDocumentHandle}
+   * @throws ApplicationException
+   *           if the document can't get opened.
+   */
+  PdfDocumentHandle acquire(final IResourceReader reader, final String uri) throws ApplicationException {
+    synchronized (this) {
+      final Entry entry = this.entries.get(uri);
+      if (entry != null) {
+        entry.users++;
+        return entry.handle;
+      }
+    }
+
+    // open outside of the lock, a download may take a while
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(reader, uri);
+    final List<PdfDocumentHandle> evicted = new ArrayList<PdfDocumentHandle>();
+    synchronized (this) {
+      Entry entry = this.entries.get(uri);
+      if (entry != null) {
+        // another thread was faster
+        evicted.add(handle);
+      } else {
+        entry = new Entry(handle);
+        this.entries.put(uri, entry);
+        this.collectEvicted(evicted);
+      }
+      entry.users++;
+      close(evicted);
+      return entry.handle;
+    }
+  }
+
+  /**
+   * Release a handle returned by
+   * {@link #acquire(IResourceReader, String)}.
+   * 
+   * @param handle
+   *          - the {@link PdfDocumentHandle}
+   */
+  synchronized void release(final PdfDocumentHandle handle) {
+    final List<PdfDocumentHandle> evicted = new ArrayList<PdfDocumentHandle>();
+    for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext();) {
+      final Entry entry = it.next();
+      if (entry.handle == handle) {
+        entry.users--;
+        this.collectEvicted(evicted);
+        close(evicted);
+        return;
+      }
+    }
+    // the handle was evicted while it was in use
+    final Entry pending = this.pendingClose.get(handle);
+    if (pending != null && --pending.users > 0) {
+      return;
+    }
+    this.pendingClose.remove(handle);
+    handle.close();
+  }
+
+  /**
+   * Close all handles which aren't in use.
+   */
+  synchronized void closeIdle() {
+    final List<PdfDocumentHandle> idle = new ArrayList<PdfDocumentHandle>();
+    for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext();) {
+      final Entry entry = it.next();
+      if (entry.users == 0) {
+        idle.add(entry.handle);
+        it.remove();
+      }
+    }
+    close(idle);
+  }
+
+  /*
+   * Remove the least recently used entries until the limit is kept. Handles
+   * which are in use are moved to the pending entries with their users and
+   * closed when the last user released them.
+   */
+  private void collectEvicted(final List<PdfDocumentHandle> evicted) {
+    for (Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator(); it.hasNext() && this.entries.size() > this.maxHandles;) {
+      final Entry entry = it.next().getValue();
+      it.remove();
+      if (entry.users == 0) {
+        evicted.add(entry.handle);
+      } else {
+        this.pendingClose.put(entry.handle, entry);
+      }
+    }
+  }
+
+  private static void close(final List<PdfDocumentHandle> handles) {
+    for (PdfDocumentHandle handle : handles) {
+      handle.close();
+    }
+  }
+
+  private static class Entry {
+    private final PdfDocumentHandle handle;
+    private int users;
+
+    Entry(final PdfDocumentHandle handle) {
+      this.handle = handle;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This fork-join task strips a range of pages of a PDF file. Each task opens
+ * its own {@link PdfDocumentHandle}, so no PDFBox state is shared between the
+ * worker threads. It's used by the {@link PdfParserImpl} for large documents.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class PdfPageRangeTask extends RecursiveTask<List<String>> {
+  private static final long serialVersionUID = 1L;
+
+  private final File pdfFile;
+  private final int startPage;
+  private final int endPage;
+
+  /**
+   * Create a new task for the pages startPage..endPage (inclusive, counting
+   * starts at 1).
+   * 
+   * @param pdfFile
+   *          - the PDF {@link File}.
+   * @param startPage
+   *          - the first page of the range.
+   * @param endPage
+   *          - the last page of the range.
+   */
+  PdfPageRangeTask(final File pdfFile, final int startPage, final int endPage) {
+    this.pdfFile = pdfFile;
+    this.startPage = startPage;
+    this.endPage = endPage;
+  }
+
+  /**
+   * 
+   * @return the first page of the range.
+   */
+  int getStartPage() {
+    return this.startPage;
+  }
+
+  /**
+   * Return the page texts of the range in ascending order.
+   * 
+   * @throws IllegalStateException
+   *           if the document can't get read.
+   */
+  @Override
+  protected List<String> compute() {
+    final List<String> pagesTexts = new ArrayList<String>(this.endPage - this.startPage + 1);
+    PdfDocumentHandle handle = null;
+    try {
+      handle = PdfDocumentHandle.open(this.pdfFile);
+      PageBoundaryTextStripper stripper = new PageBoundaryTextStripper(new IPdfPageConsumer() {
+
+        public void consumePage(final PdfPage page) {
+          pagesTexts.add(page.getTextOrig());
+        }
+      });
+      stripper.setStartPage(this.startPage);
+      stripper.setEndPage(this.endPage);
+      stripper.stripPages(handle.getDocument());
+
+      return pagesTexts;
+    } catch (IOException e) {
+      throw new IllegalStateException("Problem while stripping the pages " + this.startPage + "-" + this.endPage + " of " + this.pdfFile + ": " + e.getMessage(), e);
+    } catch (ApplicationException e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    } finally {
+      if (handle != null) {
+        handle.close();
+      }
+    }
+  }
+}
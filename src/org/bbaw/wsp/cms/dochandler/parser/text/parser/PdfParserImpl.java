@@ -1,14 +1,23 @@
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.util.PDFTextStripper;
 import org.apache.tika.parser.pdf.PDFParser;
+import org.bbaw.wsp.cms.dochandler.parser.document.IPageTextSource;
 import org.bbaw.wsp.cms.dochandler.parser.document.PdfDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+import org.bbaw.wsp.cms.dochandler.parser.document.SpillingTextWriter;
 import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
@@ -23,17 +32,53 @@ import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
  * 
  */
 public class PdfParserImpl extends ResourceParser {
+  /**
+   * Default number of pages from which on a PDF document is stripped in
+   * parallel.
+   */
+  public static final int DEFAULT_PARALLEL_PAGE_THRESHOLD = 300;
+  /**
+   * Default number of pages which are stripped by one worker.
+   */
+  public static final int DEFAULT_PAGES_PER_CHUNK = 50;
+  /**
+   * Maximum number of documents which are kept open for lazy documents.
+   */
+  public static final int MAX_OPEN_DOCUMENTS = 16;
+
+  /*
+   * Description of the extractor settings. It's part of the key of the text
+   * cache, so cached texts of another extractor are never returned.
+   */
+  private static final String EXTRACTOR_SETTINGS = PageBoundaryTextStripper.class.getName() + ";sortByPosition=false;pdfbox=" + PDFTextStripper.class.getPackage().getImplementationVersion();
+
+  /*
+   * Default pool for the parallel stripping, shared by all instances.
+   */
+  private static final ForkJoinPool SHARED_POOL = new ForkJoinPool();
+  /*
+   * Open documents of the lazy documents, shared by all instances.
+   */
+  private static final PdfHandleCache HANDLE_CACHE = new PdfHandleCache(MAX_OPEN_DOCUMENTS);
+
   private static PdfParserImpl instance;
 
+  // volatile because the only instance is configured and used by several
+  // threads
+  private volatile ForkJoinPool pool;
+  private volatile int parallelPageThreshold = DEFAULT_PARALLEL_PAGE_THRESHOLD;
+  private volatile int pagesPerChunk = DEFAULT_PAGES_PER_CHUNK;
+  private volatile PdfTextCache textCache;
+
   /**
    * Return the only existing instance. The instance uses an Apache PdfBox
    * stripper.
    * 
    * @return
    */
-  public static PdfParserImpl getInstance() {
+  public static synchronized PdfParserImpl getInstance() {
     if (instance == null) {
-      return new PdfParserImpl();
+      instance = new PdfParserImpl();
     }
     return instance;
   }
@@ -41,11 +86,74 @@ public class PdfParserImpl extends ResourceParser {
   // Protected because this parser may get extended
   protected PdfParserImpl() {
     super(new PDFParser());
+    this.pool = SHARED_POOL;
+  }
+
+  /**
+   * Set the number of pages from which on a PDF document is split into page
+   * ranges which are stripped in parallel.
+   * 
+   * @param parallelPageThreshold
+   *          - the page count. Use {@link Integer#MAX_VALUE} to disable the
+   *          parallel stripping.
+   * @throws IllegalArgumentException
+   *           if the threshold is less than 1.
+   */
+  public void setParallelPageThreshold(final int parallelPageThreshold) {
+    if (parallelPageThreshold < 1) {
+      throw new IllegalArgumentException("The value for the parameter parallelPageThreshold in PdfParserImpl must be positive.");
+    }
+    this.parallelPageThreshold = parallelPageThreshold;
+  }
+
+  /**
+   * Set the number of pages which are stripped by one worker of the parallel
+   * stripping.
+   * 
+   * @param pagesPerChunk
+   *          - the size of a page range.
+   * @throws IllegalArgumentException
+   *           if the size is less than 1.
+   */
+  public void setPagesPerChunk(final int pagesPerChunk) {
+    if (pagesPerChunk < 1) {
+      throw new IllegalArgumentException("The value for the parameter pagesPerChunk in PdfParserImpl must be positive.");
+    }
+    this.pagesPerChunk = pagesPerChunk;
   }
 
   /**
-   * Parse a pdf-document and return the object returned by the
-   * {@link ISaveStrategy} .
+   * Set the {@link PdfTextCache}. If a cache is set, the page texts of a
+   * document which was stripped before are read from the cache instead of
+   * running PDFBox again.
+   * 
+   * @param textCache
+   *          - the {@link PdfTextCache} or null to disable the cache.
+   */
+  public void setTextCache(final PdfTextCache textCache) {
+    this.textCache = textCache;
+  }
+
+  /**
+   * Set the {@link ForkJoinPool} which strips the page ranges of large
+   * documents.
+   * 
+   * @param pool
+   *          - the {@link ForkJoinPool}
+   * @throws IllegalArgumentException
+   *           if the pool is null.
+   */
+  public void setForkJoinPool(final ForkJoinPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("The value for the parameter pool in PdfParserImpl mustn't be null.");
+    }
+    this.pool = pool;
+  }
+
+  /**
+   * Parse a pdf-document within the given {@link ParseBudget} and return the
+   * object returned by the {@link ISaveStrategy}. The budget is checked at the
+   * page boundaries, see {@link #parsePages(String, String, ParseBudget)}.
    * 
    * @return Object returned by the {@link ISaveStrategy}
    * @throws ApplicationException
@@ -54,37 +162,51 @@ public class PdfParserImpl extends ResourceParser {
    * @throws IllegalStateException
    *           if the {@link ISaveStrategy} wasn't set before.
    */
-  public Object parse(final String startUri, final String uri) throws ApplicationException {
+  @Override
+  public Object parse(final String startUri, final String uri, final ParseBudget budget) throws ApplicationException {
     if (uri == null || uri.isEmpty()) {
       throw new IllegalArgumentException("The value for the parameter parser in the method parse() in PdfParserImpl mustn't be empty.");
     }
     if (this.saveStrategy == null) {
       throw new IllegalStateException("You must define a saveStategy before calling the parse()-method in ResourceParser.");
     }
-    try {
-      PDDocument document;
-      InputStream input = this.resourceReader.read(uri);
-      document = PDDocument.load(input);
-      List<String> pagesTexts = new ArrayList<String>();
-      String text = "";
+    PdfDocument doc = (PdfDocument) this.parsePages(startUri, uri, budget);
+    doc.setMetadata(new MetadataRecord()); // Set the standard metadata (page
+                                           // count, mimetype,...)
 
-      for (int i = 1; i <= document.getNumberOfPages(); i++) {
-        PDFTextStripper stripper = new PDFTextStripper();
-        stripper.setStartPage(i);
-        stripper.setEndPage(i);
-        text += "[page=" + i + "]\n" + stripper.getText(document);
-        pagesTexts.add(text);
-      }
-
-      PdfDocument doc = (PdfDocument) this.saveStrategy.generateDocumentModel(uri, uri, pagesTexts);
-      doc.setMetadata(new MetadataRecord()); // Set the standard metadata (page
-                                             // count, mimetype,...)
+    return doc;
+  }
 
-      return doc;
-    } catch (IOException e) {
-      throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + e.getMessage() + "\n");
+  /**
+   * Parse a pdf-document from a stream within the given {@link ParseBudget}.
+   * The stream is spooled to a temporary file first, because PDFBox needs
+   * random access. The stream isn't closed.
+   * 
+   * @return Object returned by the {@link ISaveStrategy}
+   * @throws ApplicationException
+   *           if the stream can't get read or parsed.
+   * @throws IllegalArgumentException
+   *           if one of the parameters is null or empty.
+   */
+  @Override
+  public Object parse(final String startUri, final String uri, final InputStream input, final ParseBudget budget) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parse() in PdfParserImpl mustn't be empty.");
+    }
+    if (input == null || budget == null) {
+      throw new IllegalArgumentException("The values for the parameters input and budget in the method parse() in PdfParserImpl mustn't be null.");
     }
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(input, uri);
+    PdfDocument doc;
+    try {
+      doc = (PdfDocument) this.parsePages(handle, uri, budget);
+    } finally {
+      handle.close();
+    }
+    doc.setMetadata(new MetadataRecord()); // Set the standard metadata (page
+                                           // count, mimetype,...)
 
+    return doc;
   }
 
   /**
@@ -99,30 +221,485 @@ public class PdfParserImpl extends ResourceParser {
    *           if the {@link ISaveStrategy} wasn't set before.
    */
   public Object parsePages(final String startUri, final String uri) throws ApplicationException {
+    return this.parsePages(startUri, uri, ParseBudget.UNLIMITED);
+  }
+
+  /**
+   * Parse the pages of a pdf-document within the given {@link ParseBudget}.
+   * The budget is checked at each page boundary. If the time, the page or the
+   * character limit is exceeded, the pages parsed so far are returned and the
+   * reason is available via {@link PdfDocument#getTruncationReason()}.
+   * 
+   * @return the {@link PdfDocument} returned by the {@link ISaveStrategy}
+   * @throws ApplicationException
+   *           if the document can't get opened.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the budget is null.
+   * @throws IllegalStateException
+   *           if the {@link ISaveStrategy} wasn't set before.
+   */
+  public Object parsePages(final String startUri, final String uri, final ParseBudget budget) throws ApplicationException {
     if (uri == null || uri.isEmpty()) {
       throw new IllegalArgumentException("The value for the parameter parser in the method parsePages() in PdfParserImpl mustn't be empty.");
     }
+    if (budget == null) {
+      throw new IllegalArgumentException("The value for the parameter budget in the method parsePages() in PdfParserImpl mustn't be null.");
+    }
+    if (this.saveStrategy == null) {
+      throw new IllegalStateException("You must define a saveStategy before calling the parse()-method in ResourceParser.");
+    }
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(this.resourceReader, uri);
+    try {
+      return this.parsePages(handle, uri, budget);
+    } finally {
+      handle.close();
+    }
+  }
+
+  /*
+   * Parse the pages of an opened document into the document model. The
+   * handle isn't closed.
+   */
+  private Object parsePages(final PdfDocumentHandle handle, final String uri, final ParseBudget budget) throws ApplicationException {
+    final PageCollector collector = new PageCollector(this.spillThreshold);
+    String truncationReason = null;
+    try {
+      if (budget.isUnlimited()) {
+        this.parsePages(handle, uri, collector);
+      } else {
+        try {
+          this.parsePages(handle, uri, new BudgetPageConsumer(budget, collector));
+        } catch (ParseBudgetExceededException e) {
+          truncationReason = e.getMessage();
+        }
+      }
+    } catch (ApplicationException e) {
+      collector.discard();
+      throw e;
+    } catch (RuntimeException e) {
+      collector.discard();
+      throw e;
+    }
+
+    final Object doc = collector.createDocumentModel(this.saveStrategy, uri);
+    if (truncationReason != null) {
+      ((PdfDocument) doc).setTruncationReason(truncationReason);
+    }
+    return doc;
+  }
+
+  /**
+   * Stream the page texts to the sink page by page. The pages are written
+   * without separator, like the text of a {@link PdfDocument}.
+   */
+  @Override
+  long streamText(final String startUri, final String uri, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(this.resourceReader, uri);
+    try {
+      return this.streamText(handle, uri, sink, charLimit);
+    } finally {
+      handle.close();
+    }
+  }
+
+  /**
+   * Stream the page texts of a document from an opened stream. The stream is
+   * spooled to a temporary file first.
+   */
+  @Override
+  long streamText(final String startUri, final String uri, final InputStream input, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(input, uri);
+    try {
+      return this.streamText(handle, uri, sink, charLimit);
+    } finally {
+      handle.close();
+    }
+  }
+
+  private long streamText(final PdfDocumentHandle handle, final String uri, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    final IPdfPageConsumer writer = new IPdfPageConsumer() {
+      public void consumePage(final PdfPage page) throws ApplicationException {
+        try {
+          sink.write(page.getTextOrig());
+        } catch (IOException e) {
+          final ApplicationException consumerError = TextSinkWriter.getConsumerError(e);
+          if (consumerError != null) {
+            throw consumerError;
+          }
+          throw new ApplicationException("Problem while writing the text of file " + uri + "  -- exception: " + e.getMessage() + "\n");
+        }
+      }
+    };
+    if (charLimit < 0) {
+      this.parsePages(handle, uri, writer);
+    } else {
+      try {
+        this.parsePages(handle, uri, new BudgetPageConsumer(new ParseBudget(0, 0, charLimit), writer));
+      } catch (ParseBudgetExceededException e) {
+        // the limit was reached
+      }
+    }
+    return sink.getCount();
+  }
+
+  /**
+   * Parse a pdf-document lazily. Only the page count is read, the text of a
+   * page is extracted when it's accessed for the first time. The document is
+   * kept open in a bounded cache of open documents in the meantime.
+   * 
+   * @return a {@link LazyPdfDocument} returned by the {@link ISaveStrategy}
+   * @throws ApplicationException
+   *           if the document can't get opened.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty.
+   * @throws IllegalStateException
+   *           if the {@link ISaveStrategy} wasn't set before.
+   */
+  public Object parseLazy(final String startUri, final String uri) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseLazy() in PdfParserImpl mustn't be empty.");
+    }
     if (this.saveStrategy == null) {
       throw new IllegalStateException("You must define a saveStategy before calling the parse()-method in ResourceParser.");
     }
+    final int pageCount;
+    final PdfDocumentHandle handle = HANDLE_CACHE.acquire(this.resourceReader, uri);
+    try {
+      synchronized (handle) {
+        pageCount = handle.getDocument().getNumberOfPages();
+      }
+    } finally {
+      HANDLE_CACHE.release(handle);
+    }
+
+    PdfDocument doc = (PdfDocument) this.saveStrategy.generateDocumentModel(uri, uri, pageCount, new LazyPageSource(uri));
+    doc.setMetadata(new MetadataRecord()); // Set the standard metadata (page
+                                           // count, mimetype,...)
+    return doc;
+  }
+
+  /**
+   * Read the metadata of a pdf-document without extracting the text: the page
+   * count and the fields of the document information dictionary.
+   * 
+   * @return the {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the document can't get opened.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty.
+   */
+  public MetadataRecord parseMetadata(final String startUri, final String uri) throws ApplicationException {
+    return this.parseMetadata(startUri, uri, new MetadataRecord());
+  }
+
+  /**
+   * Read the metadata of a pdf-document without extracting the text. Fields
+   * which are set in the given {@link MetadataRecord} already aren't
+   * overwritten, except the page count.
+   * 
+   * @param metadata
+   *          - the {@link MetadataRecord} to fill.
+   * @return the filled {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the document can't get opened.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty.
+   */
+  public MetadataRecord parseMetadata(final String startUri, final String uri, final MetadataRecord metadata) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseMetadata() in PdfParserImpl mustn't be empty.");
+    }
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(this.resourceReader, uri);
+    try {
+      return this.readMetadata(handle, uri, metadata);
+    } finally {
+      handle.close();
+    }
+  }
+
+  /**
+   * Read the metadata of a pdf-document from a stream without extracting the
+   * text. The stream is spooled to a temporary file first, it isn't closed.
+   * 
+   * @return the {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the stream can't get read or the document can't get opened.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the input is null.
+   */
+  @Override
+  public MetadataRecord parseMetadata(final String startUri, final String uri, final InputStream input) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseMetadata() in PdfParserImpl mustn't be empty.");
+    }
+    if (input == null) {
+      throw new IllegalArgumentException("The value for the parameter input in the method parseMetadata() in PdfParserImpl mustn't be null.");
+    }
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(input, uri);
+    try {
+      return this.readMetadata(handle, uri, new MetadataRecord());
+    } finally {
+      handle.close();
+    }
+  }
+
+  /*
+   * Fill the metadata from an opened document. The handle isn't closed.
+   */
+  private MetadataRecord readMetadata(final PdfDocumentHandle handle, final String uri, final MetadataRecord metadata) throws ApplicationException {
+    try {
+      final PDDocument document = handle.getDocument();
+      metadata.setPageCount(document.getNumberOfPages());
+
+      final PDDocumentInformation info = document.getDocumentInformation();
+      if (info != null) {
+        if (metadata.getTitle() == null) {
+          metadata.setTitle(emptyToNull(info.getTitle()));
+        }
+        if (metadata.getCreator() == null) {
+          metadata.setCreator(emptyToNull(info.getAuthor()));
+        }
+        if (metadata.getDescription() == null) {
+          metadata.setDescription(emptyToNull(info.getSubject()));
+        }
+        if (metadata.getSubject() == null) {
+          metadata.setSubject(emptyToNull(info.getKeywords()));
+        }
+        if (metadata.getCreationDate() == null && info.getCreationDate() != null) {
+          metadata.setCreationDate(info.getCreationDate().getTime());
+        }
+        if (metadata.getLastModified() == null && info.getModificationDate() != null) {
+          metadata.setLastModified(info.getModificationDate().getTime());
+        }
+      }
+      if (metadata.getUri() == null) {
+        metadata.setUri(uri);
+      }
+      if (metadata.getSchemaName() == null) {
+        metadata.setSchemaName(PdfDocument.SCHEME_NAME);
+      }
+      if (metadata.getType() == null) {
+        metadata.setType(PdfDocument.MIME_TYPE);
+      }
+      return metadata;
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while parsing the metadata of file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
+
+  private static String emptyToNull(final String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    return value.trim();
+  }
+
+  /**
+   * Close the documents which were kept open for lazy documents and aren't in
+   * use at the moment. A lazy document opens its document again if another
+   * page is accessed.
+   */
+  public static void closeIdleDocuments() {
+    HANDLE_CACHE.closeIdle();
+  }
+
+  /**
+   * Parse a pdf-document page by page. Each page is handed to the given
+   * {@link IPdfPageConsumer} as soon as it was stripped, so the fulltext of
+   * the whole document is never kept by the parser. The PDF document is closed
+   * when the last page was delivered or an error occured.
+   * 
+   * Local files are loaded with a scratch file, remote documents are spooled
+   * to a temporary file first. Both are deleted when the parsing is done.
+   * 
+   * If a {@link PdfTextCache} is set, unchanged documents are read from the
+   * cache.
+   * 
+   * Documents with at least {@link #setParallelPageThreshold(int)} pages are
+   * split into page ranges which are stripped in parallel. The pages are
+   * delivered in ascending order nevertheless, as soon as their range and all
+   * ranges before are done. At most two ranges per worker thread are
+   * buffered.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param consumer
+   *          - the {@link IPdfPageConsumer} which receives the pages.
+   * @return the number of delivered pages.
+   * @throws ApplicationException
+   *           if the document can't get opened or the consumer failed.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the consumer is null.
+   */
+  public int parsePages(final String startUri, final String uri, final IPdfPageConsumer consumer) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parsePages() in PdfParserImpl mustn't be empty.");
+    }
+    if (consumer == null) {
+      throw new IllegalArgumentException("The value for the parameter consumer in the method parsePages() in PdfParserImpl mustn't be null.");
+    }
+    final PdfDocumentHandle handle = PdfDocumentHandle.open(this.resourceReader, uri);
     try {
-      PDDocument document;
-      InputStream input = this.resourceReader.read(uri);
-      document = PDDocument.load(input);
-      List<String> pagesTexts = new ArrayList<String>();
-      String text = "";
+      return this.parsePages(handle, uri, consumer);
+    } finally {
+      handle.close();
+    }
+  }
+
+  /*
+   * Deliver the pages of an opened document to the consumer. The handle isn't
+   * closed.
+   */
+  private int parsePages(final PdfDocumentHandle handle, final String uri, final IPdfPageConsumer consumer) throws ApplicationException {
+    PdfTextCache.EntryWriter cacheWriter = null;
+    try {
+      IPdfPageConsumer target = consumer;
+      if (this.textCache != null) {
+        final String cacheKey = PdfTextCache.computeKey(handle.getFile(), EXTRACTOR_SETTINGS);
+        final int cachedPages = this.textCache.readPages(cacheKey, consumer);
+        if (cachedPages != -1) {
+          return cachedPages;
+        }
+        // write the cache entry while the pages are delivered
+        cacheWriter = this.textCache.openWriter(cacheKey).passTo(consumer);
+        target = cacheWriter;
+      }
 
-      for (int i = 1; i <= document.getNumberOfPages(); i++) {
-        PDFTextStripper stripper = new PDFTextStripper();
-        stripper.setStartPage(i);
-        stripper.setEndPage(i);
-        text = stripper.getText(document);
-        pagesTexts.add(text);
+      final int pageCount = handle.getDocument().getNumberOfPages();
+      if (pageCount >= this.parallelPageThreshold) {
+        this.parsePagesParallel(handle.getFile(), pageCount, target);
+      } else {
+        // One stripper pass over the whole document, the pages are cut at the
+        // page boundaries
+        PageBoundaryTextStripper stripper = new PageBoundaryTextStripper(target);
+        stripper.stripPages(handle.getDocument());
       }
 
-      return this.saveStrategy.generateDocumentModel(uri, uri, pagesTexts);
+      if (cacheWriter != null) {
+        cacheWriter.commit();
+      }
+      return pageCount;
     } catch (IOException e) {
       throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    } finally {
+      if (cacheWriter != null) {
+        cacheWriter.abort();
+      }
+    }
+  }
+
+  /*
+   * Split the document into page ranges, strip them on the fork-join pool and
+   * deliver the pages in their original order. At most two ranges per worker
+   * are in flight, so only their texts are buffered: the next range is
+   * submitted when the oldest one was delivered.
+   */
+  private void parsePagesParallel(final File pdfFile, final int pageCount, final IPdfPageConsumer consumer) throws ApplicationException {
+    final int window = 2 * this.pool.getParallelism();
+    final Deque<PdfPageRangeTask> tasks = new ArrayDeque<PdfPageRangeTask>(window);
+    int nextPage = 1;
+    try {
+      while (nextPage <= pageCount || !tasks.isEmpty()) {
+        while (nextPage <= pageCount && tasks.size() < window) {
+          final int endPage = Math.min(nextPage + this.pagesPerChunk - 1, pageCount);
+          PdfPageRangeTask task = new PdfPageRangeTask(pdfFile, nextPage, endPage);
+          this.pool.execute(task);
+          tasks.add(task);
+          nextPage = endPage + 1;
+        }
+        final PdfPageRangeTask task = tasks.peek();
+        final List<String> pagesTexts = task.get();
+        tasks.poll();
+        for (int i = 0; i < pagesTexts.size(); i++) {
+          consumer.consumePage(new PdfPage(task.getStartPage() + i, pagesTexts.get(i)));
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new ApplicationException("Problem while parsing file " + pdfFile + "  -- exception: " + e.getCause().getMessage() + "\n");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApplicationException("Parsing of file " + pdfFile + " was interrupted.");
+    } finally {
+      for (PdfPageRangeTask task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+
+  /*
+   * Extracts single pages for a lazy document. The handle is synchronized
+   * because a PDDocument mustn't be used by two threads at the same time.
+   */
+  private class LazyPageSource implements IPageTextSource {
+    private final String uri;
+
+    LazyPageSource(final String uri) {
+      this.uri = uri;
+    }
+
+    public String extractPageText(final int pageNumber) throws ApplicationException {
+      final PdfDocumentHandle handle = HANDLE_CACHE.acquire(resourceReader, this.uri);
+      try {
+        synchronized (handle) {
+          PDFTextStripper stripper = new PDFTextStripper();
+          stripper.setStartPage(pageNumber);
+          stripper.setEndPage(pageNumber);
+          return stripper.getText(handle.getDocument());
+        }
+      } catch (IOException e) {
+        throw new ApplicationException("Problem while parsing page " + pageNumber + " of file " + this.uri + "  -- exception: " + e.getMessage() + "\n");
+      } finally {
+        HANDLE_CACHE.release(handle);
+      }
+    }
+  }
+
+  /*
+   * Collects the pages into one text buffer and remembers the page offsets.
+   * The buffer is spilled to a temporary file if it grows beyond the
+   * threshold.
+   */
+  private static class PageCollector implements IPdfPageConsumer {
+    private final SpillingTextWriter text;
+    private int[] pageOffsets = new int[64];
+    private int pageCount;
+
+    PageCollector(final int spillThreshold) {
+      this.text = new SpillingTextWriter(spillThreshold);
+    }
+
+    public void consumePage(final PdfPage page) throws ApplicationException {
+      if (this.pageCount + 1 == this.pageOffsets.length) {
+        this.pageOffsets = Arrays.copyOf(this.pageOffsets, this.pageOffsets.length * 2);
+      }
+      this.pageOffsets[this.pageCount++] = (int) this.text.length();
+      try {
+        this.text.write(page.getTextOrig());
+      } catch (IOException e) {
+        throw new ApplicationException("Problem while spilling the text of page " + page.getPageNumber() + "  -- exception: " + e.getMessage() + "\n");
+      }
+    }
+
+    Object createDocumentModel(final DocumentModelStrategy strategy, final String uri) throws ApplicationException {
+      final int[] offsets = Arrays.copyOf(this.pageOffsets, this.pageCount + 1);
+      offsets[this.pageCount] = (int) this.text.length();
+      try {
+        this.text.close();
+        if (this.text.isSpilled()) {
+          return strategy.generateDocumentModel(uri, uri, this.text.toSpilledText(), offsets);
+        }
+        return strategy.generateDocumentModel(uri, uri, this.text.toCharArray(), offsets);
+      } catch (IOException e) {
+        this.text.discard();
+        throw new ApplicationException("Problem while spilling the text of file " + uri + "  -- exception: " + e.getMessage() + "\n");
+      }
+    }
+
+    void discard() {
+      this.text.discard();
     }
   }
 
@@ -0,0 +1,383 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.bbaw.wsp.cms.dochandler.parser.document.PdfPage;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This class is a persistent cache for the page texts of PDF documents. An
+ * entry is addressed by a hash of the PDF bytes and the extractor settings, so
+ * an unchanged document is found again wherever it's located.
+ * 
+ * Each entry is a file which ends with a CRC32 checksum. Entries are written to
+ * a temporary file and moved into place afterwards, so a crashed run never
+ * leaves a half written entry. Damaged entries are deleted when they are read.
+ * If the cache grows beyond its size limit, the least recently used entries
+ * are evicted.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+public class PdfTextCache {
+  private static final int MAGIC = 0x57535054; // "WSPT"
+  private static final int VERSION = 1;
+  private static final int END_OF_PAGES = -1;
+  private static final String ENTRY_SUFFIX = ".pages";
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final File directory;
+  private final long maxBytes;
+  private long totalBytes;
+
+  /**
+   * Create a new PdfTextCache.
+   * 
+   * @param directory
+   *          - the directory which holds the entries. It's created if it
+   *          doesn't exist.
+   * @param maxBytes
+   *          - the maximum size of all entries in bytes.
+   * @throws ApplicationException
+   *           if the directory can't get created.
+   * @throws IllegalArgumentException
+   *           if the directory is null or maxBytes isn't positive.
+   */
+  public PdfTextCache(final File directory, final long maxBytes) throws ApplicationException {
+    if (directory == null) {
+      throw new IllegalArgumentException("The value for the parameter directory in the constructor of PdfTextCache mustn't be null.");
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("The value for the parameter maxBytes in the constructor of PdfTextCache must be positive.");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new ApplicationException("The cache directory " + directory + " can't get created.");
+    }
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    for (File entry : this.listEntries()) {
+      this.totalBytes += entry.length();
+    }
+  }
+
+  /**
+   * Compute the key of a PDF file.
+   * 
+   * @param pdfFile
+   *          - the PDF {@link File}.
+   * @param settings
+   *          - a description of the extractor settings. A different
+   *          description leads to a different key.
+   * @return the key as hex String.
+   * @throws ApplicationException
+   *           if the file can't get read.
+   */
+  public static String computeKey(final File pdfFile, final String settings) throws ApplicationException {
+    InputStream in = null;
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      in = new DigestInputStream(new FileInputStream(pdfFile), digest);
+      final byte[] buffer = new byte[64 * 1024];
+      while (in.read(buffer) != -1) {
+        // the digest is updated by the stream
+      }
+      digest.update(settings.getBytes(UTF8));
+
+      final StringBuilder key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return key.toString();
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while hashing file " + pdfFile + "  -- exception: " + e.getMessage() + "\n");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  /**
+   * Deliver the cached pages of an entry to a consumer. The entry is checked
+   * before the first page is delivered.
+   * 
+   * @param key
+   *          - the key computed by {@link #computeKey(File, String)}.
+   * @param consumer
+   *          - the {@link IPdfPageConsumer}.
+   * @return the number of delivered pages or -1 if there's no (intact) entry.
+   * @throws ApplicationException
+   *           if the consumer failed.
+   */
+  public int readPages(final String key, final IPdfPageConsumer consumer) throws ApplicationException {
+    final File entry = this.getEntryFile(key);
+    if (!entry.isFile()) {
+      return -1;
+    }
+    if (!isIntact(entry)) {
+      this.remove(entry);
+      return -1;
+    }
+    entry.setLastModified(System.currentTimeMillis()); // LRU order
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+      in.readInt(); // magic
+      in.readInt(); // version
+      int pageNumber = 0;
+      for (int length = in.readInt(); length != END_OF_PAGES; length = in.readInt()) {
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        consumer.consumePage(new PdfPage(++pageNumber, new String(bytes, UTF8)));
+      }
+      return pageNumber;
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while reading the cache entry " + entry + "  -- exception: " + e.getMessage() + "\n");
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  /**
+   * Open a writer for a new entry. The pages are written while they are
+   * delivered, the entry becomes visible on {@link EntryWriter#commit()}.
+   * 
+   * @param key
+   *          - the key computed by {@link #computeKey(File, String)}.
+   * @return the {@link EntryWriter}.
+   * @throws ApplicationException
+   *           if the temporary file can't get created.
+   */
+  public EntryWriter openWriter(final String key) throws ApplicationException {
+    try {
+      return new EntryWriter(key);
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while creating a cache entry in " + this.directory + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
+
+  /**
+   * This consumer writes the pages to a new cache entry and passes them on to
+   * another consumer.
+   */
+  public class EntryWriter implements IPdfPageConsumer {
+    private final String key;
+    private final File tempFile;
+    private final CRC32 checksum;
+    private DataOutputStream out;
+    private IPdfPageConsumer target;
+    private int pageCount;
+
+    private EntryWriter(final String key) throws IOException {
+      this.key = key;
+      this.tempFile = File.createTempFile(key, ".tmp", directory);
+      this.checksum = new CRC32();
+      this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(this.tempFile)), this.checksum));
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(VERSION);
+    }
+
+    /**
+     * Pass the pages on to a consumer after they were written.
+     * 
+     * @param target
+     *          - the {@link IPdfPageConsumer}.
+     * @return this writer.
+     */
+    public EntryWriter passTo(final IPdfPageConsumer target) {
+      this.target = target;
+      return this;
+    }
+
+    public void consumePage(final PdfPage page) throws ApplicationException {
+      try {
+        final byte[] bytes = page.getTextOrig().getBytes(UTF8);
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+        this.pageCount++;
+      } catch (IOException e) {
+        throw new ApplicationException("Problem while writing the cache entry " + this.tempFile + "  -- exception: " + e.getMessage() + "\n");
+      }
+      if (this.target != null) {
+        this.target.consumePage(page);
+      }
+    }
+
+    /**
+     * Finish the entry and move it into the cache.
+     * 
+     * @throws ApplicationException
+     *           if the entry can't get written.
+     */
+    public void commit() throws ApplicationException {
+      try {
+        this.out.writeInt(END_OF_PAGES);
+        this.out.writeInt(this.pageCount);
+        this.out.flush();
+        // the checksum itself isn't part of the checksum
+        final long crc = this.checksum.getValue();
+        this.out.writeLong(crc);
+        this.out.close();
+        this.out = null;
+        moveIntoPlace(this.tempFile, this.key);
+      } catch (IOException e) {
+        this.abort();
+        throw new ApplicationException("Problem while writing the cache entry " + this.tempFile + "  -- exception: " + e.getMessage() + "\n");
+      }
+    }
+
+    /**
+     * Drop the entry. It's safe to call this method after {@link #commit()}.
+     */
+    public void abort() {
+      closeQuietly(this.out);
+      this.out = null;
+      if (this.tempFile.exists()) {
+        this.tempFile.delete();
+      }
+    }
+  }
+
+  private synchronized void moveIntoPlace(final File tempFile, final String key) throws IOException {
+    final File entry = this.getEntryFile(key);
+    final File entryDir = entry.getParentFile();
+    if (!entryDir.isDirectory() && !entryDir.mkdirs()) {
+      throw new IOException("Can't create the directory " + entryDir);
+    }
+    final long oldLength = entry.isFile() ? entry.length() : 0;
+    try {
+      Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    this.totalBytes += entry.length() - oldLength;
+    this.evict();
+  }
+
+  /*
+   * Delete the least recently used entries until the cache is below 90
+   * percent of its limit.
+   */
+  private synchronized void evict() {
+    if (this.totalBytes <= this.maxBytes) {
+      return;
+    }
+    final List<File> entries = this.listEntries();
+    final Map<File, Long> lastModified = new HashMap<File, Long>();
+    for (File entry : entries) {
+      lastModified.put(entry, entry.lastModified());
+    }
+    Collections.sort(entries, new Comparator<File>() {
+
+      public int compare(final File f1, final File f2) {
+        return lastModified.get(f1).compareTo(lastModified.get(f2));
+      }
+    });
+
+    final long lowWatermark = this.maxBytes / 10 * 9;
+    for (int i = 0; i < entries.size() && this.totalBytes > lowWatermark; i++) {
+      this.remove(entries.get(i));
+    }
+  }
+
+  private synchronized void remove(final File entry) {
+    final long length = entry.length();
+    if (entry.delete()) {
+      this.totalBytes -= length;
+    }
+  }
+
+  private File getEntryFile(final String key) {
+    // two levels, so a directory never holds too many entries
+    return new File(new File(this.directory, key.substring(0, 2)), key + ENTRY_SUFFIX);
+  }
+
+  private List<File> listEntries() {
+    final List<File> entries = new ArrayList<File>();
+    final File[] subDirs = this.directory.listFiles();
+    if (subDirs != null) {
+      for (File subDir : subDirs) {
+        final File[] files = subDir.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+              entries.add(file);
+            }
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /*
+   * Check the magic number, the version, the page count and the checksum of
+   * an entry.
+   */
+  private static boolean isIntact(final File entry) {
+    DataInputStream in = null;
+    try {
+      final CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(entry)), new CRC32());
+      in = new DataInputStream(checked);
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return false;
+      }
+      int pageCount = 0;
+      for (int length = in.readInt(); length != END_OF_PAGES; length = in.readInt()) {
+        if (length < 0 || in.skipBytes(length) != length) {
+          return false;
+        }
+        pageCount++;
+      }
+      if (in.readInt() != pageCount) {
+        return false;
+      }
+      final long crc = checked.getChecksum().getValue();
+      return in.readLong() == crc && in.read() == -1;
+    } catch (EOFException e) {
+      return false;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  private static void closeQuietly(final Closeable closeable) {
+    try {
+      if (closeable != null) {
+        closeable.close();
+      }
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+}
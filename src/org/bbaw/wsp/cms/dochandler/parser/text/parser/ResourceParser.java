@@ -3,20 +3,32 @@
  */
 package org.bbaw.wsp.cms.dochandler.parser.text.parser;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.bbaw.wsp.cms.dochandler.parser.document.GeneralDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.IDocument;
+import org.bbaw.wsp.cms.dochandler.parser.document.SpillingTextWriter;
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
 import org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader;
 import org.bbaw.wsp.cms.dochandler.parser.text.reader.ResourceReaderImpl;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.DefaultHandler;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.ParseContext;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
 
 /**
- * This class is the API for all parsers.
+ * This class is the API for all parsers. An instance is shared by all threads:
+ * the Tika parsers are stateless and all state of a parsing (content handler,
+ * metadata, parse context, input stream) is created per call.
  * 
  * @author Sascha Feldmann (wsp-shk1)
  * @date 06.09.12
@@ -26,9 +38,18 @@ import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
  * 
  */
 public abstract class ResourceParser {
+  /*
+   * Number of parser instances created so far, see
+   * ParserRegistry#getAllocationCount().
+   */
+  private static final AtomicLong ALLOCATIONS = new AtomicLong();
+
   protected Parser parser;
   protected IResourceReader resourceReader;
   protected DocumentModelStrategy saveStrategy;
+  // volatile because the only instance is configured and used by several
+  // threads
+  protected volatile int spillThreshold = SpillingTextWriter.DEFAULT_THRESHOLD;
 
   /**
    * Create a new PdfParser instance.
@@ -46,6 +67,32 @@ public abstract class ResourceParser {
     this.parser = parser;
     this.resourceReader = new ResourceReaderImpl();
     this.saveStrategy = new DocumentModelStrategy();
+    ALLOCATIONS.incrementAndGet();
+  }
+
+  /**
+   * 
+   * @return the number of parser instances created so far.
+   */
+  static long getAllocationCount() {
+    return ALLOCATIONS.get();
+  }
+
+  /**
+   * Set the number of characters from which on the fulltext of a document is
+   * spilled to a temporary file instead of being kept on the heap.
+   * 
+   * @param spillThreshold
+   *          - the number of characters. Use {@link Integer#MAX_VALUE} to keep
+   *          all texts in memory.
+   * @throws IllegalArgumentException
+   *           if the threshold is negative.
+   */
+  public void setSpillThreshold(final int spillThreshold) {
+    if (spillThreshold < 0) {
+      throw new IllegalArgumentException("The value for the parameter spillThreshold in ResourceParser mustn't be negative.");
+    }
+    this.spillThreshold = spillThreshold;
   }
 
   /**
@@ -64,30 +111,381 @@ public abstract class ResourceParser {
    *           if the {@link ISaveStrategy} wasn't set before.
    */
   public Object parse(final String startUri, final String uri) throws ApplicationException {
+    return this.parse(startUri, uri, ParseBudget.UNLIMITED);
+  }
+
+  /**
+   * Parse a document within the given {@link ParseBudget}. The parser stops if
+   * the time or the character limit is exceeded and returns the text parsed so
+   * far. The reason is available via {@link IDocument#getTruncationReason()}
+   * then.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param budget
+   *          - the {@link ParseBudget}.
+   * @return the object returned by the {@link ISaveStrategy}
+   * @throws ApplicationException
+   *           if the were errors while parsing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the budget is null.
+   * @throws IllegalStateException
+   *           if the {@link ISaveStrategy} wasn't set before.
+   */
+  public Object parse(final String startUri, final String uri, final ParseBudget budget) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter parser in the method parse() in ResourceParser mustn't be empty.");
+    }
+    final InputStream input = this.resourceReader.read(uri);
+    try {
+      return this.parse(startUri, uri, input, budget);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Parse a document from a stream which was opened by the caller, e.g. after
+   * the content type was detected from its first bytes. The stream isn't
+   * closed.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param input
+   *          - the {@link InputStream} of the document.
+   * @param budget
+   *          - the {@link ParseBudget}.
+   * @return the object returned by the {@link ISaveStrategy}
+   * @throws ApplicationException
+   *           if the were errors while parsing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the input or the budget is null.
+   * @throws IllegalStateException
+   *           if the {@link ISaveStrategy} wasn't set before.
+   */
+  public Object parse(final String startUri, final String uri, final InputStream input, final ParseBudget budget) throws ApplicationException {
     if (uri == null || uri.isEmpty()) {
       throw new IllegalArgumentException("The value for the parameter parser in the method parse() in ResourceParser mustn't be empty.");
     }
+    if (input == null) {
+      throw new IllegalArgumentException("The value for the parameter input in the method parse() in ResourceParser mustn't be null.");
+    }
+    if (budget == null) {
+      throw new IllegalArgumentException("The value for the parameter budget in the method parse() in ResourceParser mustn't be null.");
+    }
     if (this.saveStrategy == null) {
       throw new IllegalStateException("You must define a saveStategy before calling the parse()-method in ResourceParser.");
     }
-    InputStream input;
+    // texts beyond the threshold are spilled to a temporary file
+    final SpillingTextWriter text = new SpillingTextWriter(this.spillThreshold);
+    boolean done = false;
     try {
-      input = this.resourceReader.read(uri);
-
-      // Don't limit the amount of characters -> -1 as argument
-      ContentHandler textHandler = new BodyContentHandler(-1);
+      // -1 doesn't limit the amount of characters
+      final WriteOutContentHandler limitHandler = new WriteOutContentHandler(text, budget.getMaxChars() > 0 ? (int) Math.min(budget.getMaxChars(), Integer.MAX_VALUE) : -1);
+      final BudgetContentHandler textHandler = new BudgetContentHandler(new BodyContentHandler(limitHandler), budget);
       Metadata metadata = new Metadata();
       ParseContext context = new ParseContext();
-      this.parser.parse(input, textHandler, metadata, context);
-      input.close();
-      textHandler.endDocument();
+      String truncationReason = null;
+      try {
+        // the parsers end the document themselves
+        this.parseContent(input, textHandler, metadata, context);
+      } catch (Exception e) {
+        if (limitHandler.isWriteLimitReached(e)) {
+          truncationReason = "The character budget of " + budget.getMaxChars() + " characters was exceeded.";
+        } else {
+          truncationReason = textHandler.getExceededReason(e);
+        }
+        if (truncationReason == null) {
+          throw e;
+        }
+      }
 
-      return this.saveStrategy.generateDocumentModel(uri, uri, textHandler.toString());
+      text.close();
+      final Object doc = this.createDocumentModel(uri, text, context);
+      if (truncationReason != null && doc instanceof GeneralDocument) {
+        ((GeneralDocument) doc).setTruncationReason(truncationReason);
+      }
+      done = true;
+      return doc;
     } catch (Exception e) {
       // Write log
       // LogFile.writeLog("Problem while parsing file " + uri
       // + "  -- exception: " + e.getMessage() + "\n");
       throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    } finally {
+      if (!done) {
+        text.discard();
+      }
+    }
+  }
+
+  /**
+   * Parse a document and stream its text to a {@link Writer}. The text isn't
+   * kept by the parser, so the memory doesn't grow with the size of the
+   * document.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param sink
+   *          - the {@link Writer} which receives the text. It's flushed, but
+   *          not closed.
+   * @param charLimit
+   *          - the maximum number of characters or -1 for no limit. The
+   *          parsing is stopped if the limit is reached.
+   * @return the number of characters written to the sink.
+   * @throws ApplicationException
+   *           if the were errors while parsing or writing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the sink is null.
+   */
+  public long parseTo(final String startUri, final String uri, final Writer sink, final int charLimit) throws ApplicationException {
+    if (sink == null) {
+      throw new IllegalArgumentException("The value for the parameter sink in the method parseTo() in ResourceParser mustn't be null.");
+    }
+    return this.parseTo(startUri, uri, null, new TextSinkWriter(sink), charLimit);
+  }
+
+  /**
+   * Parse a document from a stream which was opened by the caller and stream
+   * its text to a {@link Writer}. The stream isn't closed.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param input
+   *          - the {@link InputStream} of the document.
+   * @param sink
+   *          - the {@link Writer} which receives the text. It's flushed, but
+   *          not closed.
+   * @param charLimit
+   *          - the maximum number of characters or -1 for no limit. The
+   *          parsing is stopped if the limit is reached.
+   * @return the number of characters written to the sink.
+   * @throws ApplicationException
+   *           if the were errors while parsing or writing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the input or the sink is null.
+   */
+  public long parseTo(final String startUri, final String uri, final InputStream input, final Writer sink, final int charLimit) throws ApplicationException {
+    if (input == null) {
+      throw new IllegalArgumentException("The value for the parameter input in the method parseTo() in ResourceParser mustn't be null.");
+    }
+    if (sink == null) {
+      throw new IllegalArgumentException("The value for the parameter sink in the method parseTo() in ResourceParser mustn't be null.");
+    }
+    return this.parseTo(startUri, uri, input, new TextSinkWriter(sink), charLimit);
+  }
+
+  /**
+   * Parse a document and hand its text to an {@link ITextChunkConsumer} chunk
+   * by chunk. The text isn't kept by the parser.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param consumer
+   *          - the {@link ITextChunkConsumer} which receives the text.
+   * @param charLimit
+   *          - the maximum number of characters or -1 for no limit. The
+   *          parsing is stopped if the limit is reached.
+   * @return the number of characters handed to the consumer.
+   * @throws ApplicationException
+   *           if the were errors while parsing or the consumer failed.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the consumer is null.
+   */
+  public long parseTo(final String startUri, final String uri, final ITextChunkConsumer consumer, final int charLimit) throws ApplicationException {
+    if (consumer == null) {
+      throw new IllegalArgumentException("The value for the parameter consumer in the method parseTo() in ResourceParser mustn't be null.");
+    }
+    return this.parseTo(startUri, uri, null, new TextSinkWriter(consumer), charLimit);
+  }
+
+  /*
+   * The document is read by the parser if the input is null.
+   */
+  private long parseTo(final String startUri, final String uri, final InputStream input, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseTo() in ResourceParser mustn't be empty.");
+    }
+    if (charLimit == 0) {
+      return 0;
+    }
+    final int limit = charLimit < 0 ? -1 : charLimit;
+    final long count = input != null ? this.streamText(startUri, uri, input, sink, limit) : this.streamText(startUri, uri, sink, limit);
+    try {
+      sink.flush();
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while writing the text of file " + uri + "  -- exception: " + e.getMessage() + "\n");
+    }
+    return count;
+  }
+
+  /**
+   * Stream the text of a document to the sink. Subclasses which don't use
+   * Tika override this method.
+   * 
+   * @param charLimit
+   *          - the maximum number of characters (positive) or -1.
+   * @return the number of characters written to the sink.
+   */
+  long streamText(final String startUri, final String uri, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    final InputStream input = this.resourceReader.read(uri);
+    try {
+      return this.streamText(startUri, uri, input, sink, charLimit);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Stream the text of a document from an opened stream to the sink. The
+   * stream isn't closed.
+   * 
+   * @param charLimit
+   *          - the maximum number of characters (positive) or -1.
+   * @return the number of characters written to the sink.
+   */
+  long streamText(final String startUri, final String uri, final InputStream input, final TextSinkWriter sink, final int charLimit) throws ApplicationException {
+    // The SAX character events are written to the sink directly
+    final WriteOutContentHandler limitHandler = new WriteOutContentHandler(sink, charLimit);
+    try {
+      this.parseContent(input, new BodyContentHandler(limitHandler), new Metadata(), new ParseContext());
+    } catch (Exception e) {
+      if (!limitHandler.isWriteLimitReached(e)) {
+        final ApplicationException consumerError = TextSinkWriter.getConsumerError(e);
+        if (consumerError != null) {
+          throw consumerError;
+        }
+        throw new ApplicationException("Problem while parsing file " + uri + "  -- exception: " + e.getMessage() + "\n");
+      }
+    }
+    return sink.getCount();
+  }
+
+  /**
+   * Hand the content of a document to the text handler. The default
+   * implementation runs the Tika parser, subclasses may read the content on
+   * their own and keep additional results in the {@link ParseContext}.
+   * 
+   * @param input
+   *          - the {@link InputStream} of the document.
+   * @param textHandler
+   *          - the {@link ContentHandler} which receives the XHTML events.
+   * @param metadata
+   *          - the Tika {@link Metadata}.
+   * @param context
+   *          - the {@link ParseContext} of this parsing.
+   * @throws Exception
+   *           if the document can't be parsed.
+   */
+  protected void parseContent(final InputStream input, final ContentHandler textHandler, final Metadata metadata, final ParseContext context) throws Exception {
+    this.parser.parse(input, textHandler, metadata, context);
+  }
+
+  /**
+   * Create the document model from the parsed text.
+   * 
+   * @param uri
+   *          - the URI to the document.
+   * @param text
+   *          - the closed {@link SpillingTextWriter} which holds the text.
+   * @param context
+   *          - the {@link ParseContext} which was given to
+   *          {@link #parseContent(InputStream, ContentHandler, Metadata, ParseContext)}.
+   * @return the object returned by the {@link DocumentModelStrategy}
+   * @throws IOException
+   *           if the spilled text can't be read.
+   */
+  protected Object createDocumentModel(final String uri, final SpillingTextWriter text, final ParseContext context) throws IOException {
+    if (text.isSpilled()) {
+      return this.saveStrategy.generateDocumentModel(uri, uri, text.toSpilledText());
+    }
+    return this.saveStrategy.generateDocumentModel(uri, uri, text.toString());
+  }
+
+  /**
+   * Parse the metadata of a document only. The fulltext is discarded while
+   * parsing.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @return the {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the were errors while parsing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty
+   */
+  public MetadataRecord parseMetadata(final String startUri, final String uri) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseMetadata() in ResourceParser mustn't be empty.");
+    }
+    final InputStream input = this.resourceReader.read(uri);
+    try {
+      return this.parseMetadata(startUri, uri, input);
+    } finally {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Parse the metadata of a document from a stream which was opened by the
+   * caller. The stream isn't closed.
+   * 
+   * @param startUri
+   *          - the harvesting URI.
+   * @param uri
+   *          - the URI to the document.
+   * @param input
+   *          - the {@link InputStream} of the document.
+   * @return the {@link MetadataRecord}
+   * @throws ApplicationException
+   *           if the were errors while parsing.
+   * @throws IllegalArgumentException
+   *           if the uri is null or empty or the input is null.
+   */
+  public MetadataRecord parseMetadata(final String startUri, final String uri, final InputStream input) throws ApplicationException {
+    if (uri == null || uri.isEmpty()) {
+      throw new IllegalArgumentException("The value for the parameter uri in the method parseMetadata() in ResourceParser mustn't be empty.");
+    }
+    if (input == null) {
+      throw new IllegalArgumentException("The value for the parameter input in the method parseMetadata() in ResourceParser mustn't be null.");
+    }
+    try {
+      Metadata metadata = new Metadata();
+      // The text handler drops all characters
+      this.parser.parse(input, new DefaultHandler(), metadata, new ParseContext());
+
+      MetadataRecord record = new MetadataRecord();
+      record.setUri(uri);
+      record.setTitle(metadata.get(TikaCoreProperties.TITLE));
+      record.setCreator(metadata.get(TikaCoreProperties.CREATOR));
+      record.setType(metadata.get(Metadata.CONTENT_TYPE));
+      return record;
+    } catch (Exception e) {
+      throw new ApplicationException("Problem while parsing the metadata of file " + uri + "  -- exception: " + e.getMessage() + "\n");
     }
   }
 }
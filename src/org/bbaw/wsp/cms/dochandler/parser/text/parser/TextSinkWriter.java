@@ -0,0 +1,114 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.parser;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This writer hands the written text on to a sink and counts the characters.
+ * The sink is either another {@link Writer} or an {@link ITextChunkConsumer}.
+ * Errors of a chunk consumer are tunnelled as IOException.
+ * 
+ * @author Sascha Feldmann (wsp-shk1)
+ * 
+ */
+class TextSinkWriter extends Writer {
+
+  private final Writer writer;
+  private final ITextChunkConsumer consumer;
+  private long count;
+
+  /**
+   * Create a new TextSinkWriter for a {@link Writer}.
+   * 
+   * @param writer
+   *          - the {@link Writer}. It isn't closed.
+   */
+  TextSinkWriter(final Writer writer) {
+    this.writer = writer;
+    this.consumer = null;
+  }
+
+  /**
+   * Create a new TextSinkWriter for an {@link ITextChunkConsumer}.
+   * 
+   * @param consumer
+   *          - the {@link ITextChunkConsumer}.
+   */
+  TextSinkWriter(final ITextChunkConsumer consumer) {
+    this.writer = null;
+    this.consumer = consumer;
+  }
+
+  @Override
+  public void write(final char[] cbuf, final int off, final int len) throws IOException {
+    if (len == 0) {
+      return;
+    }
+    if (this.writer != null) {
+      this.writer.write(cbuf, off, len);
+    } else {
+      try {
+        this.consumer.consumeChunk(cbuf, off, len);
+      } catch (ApplicationException e) {
+        throw new ConsumerException(e);
+      }
+    }
+    this.count += len;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (this.writer != null) {
+      this.writer.flush();
+    }
+  }
+
+  /**
+   * The sink isn't closed, it belongs to the caller.
+   */
+  @Override
+  public void close() throws IOException {
+    this.flush();
+  }
+
+  /**
+   * 
+   * @return the number of characters handed on.
+   */
+  long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Return the error of the chunk consumer if it caused the given exception.
+   * 
+   * @param t
+   *          - the exception thrown by the parser.
+   * @return the {@link ApplicationException} of the consumer or null.
+   */
+  static ApplicationException getConsumerError(final Throwable t) {
+    Throwable cause = t;
+    while (cause != null) {
+      if (cause instanceof ConsumerException) {
+        return ((ConsumerException) cause).getCause();
+      }
+      cause = cause.getCause();
+    }
+    return null;
+  }
+
+  private static class ConsumerException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ConsumerException(final ApplicationException cause) {
+      super(cause);
+    }
+
+    @Override
+    public ApplicationException getCause() {
+      return (ApplicationException) super.getCause();
+    }
+  }
+}
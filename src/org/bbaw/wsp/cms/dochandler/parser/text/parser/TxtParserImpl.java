@@ -18,9 +18,9 @@ public class TxtParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static TxtParserImpl getInstance() {
+  public static synchronized TxtParserImpl getInstance() {
     if (instance == null) {
-      return new TxtParserImpl();
+      instance = new TxtParserImpl();
     }
     return instance;
   }
@@ -18,9 +18,9 @@ public class XmlParserImpl extends ResourceParser {
    * 
    * @return
    */
-  public static XmlParserImpl getInstance() {
+  public static synchronized XmlParserImpl getInstance() {
     if (instance == null) {
-      return new XmlParserImpl();
+      instance = new XmlParserImpl();
     }
     return instance;
   }
@@ -0,0 +1,202 @@
+package org.bbaw.wsp.cms.dochandler.parser.text.reader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
+
+/**
+ * This store keeps the validators (ETag and Last-Modified) of the fetched
+ * resources, so a resource is only downloaded again if it was modified. The
+ * store may be saved to a file and loaded by the next crawl.
+ *
+ * The file contains one line per resource: [URI] TAB [ETag] TAB [modification
+ * time in milliseconds]. The ETag is empty if the server didn't send one.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public class HttpValidatorStore {
+  private static final Charset FILE_ENCODING = Charset.forName("UTF-8");
+  private static final char SEPARATOR = '\t';
+
+  private final File file;
+  private final Map<String, Validator> validators = new ConcurrentHashMap<String, Validator>();
+
+  /**
+   * Create a new HttpValidatorStore which is kept in the heap only.
+   */
+  public HttpValidatorStore() {
+    this.file = null;
+  }
+
+  /**
+   * Create a new HttpValidatorStore which is saved to a file. The validators
+   * are loaded if the file exists.
+   *
+   * @param file
+   *          - the {@link File} of the store.
+   * @throws ApplicationException
+   *           if the existing file can't be read.
+   */
+  public HttpValidatorStore(final File file) throws ApplicationException {
+    if (file == null) {
+      throw new IllegalArgumentException("The value for the parameter file in HttpValidatorStore mustn't be null.");
+    }
+    this.file = file;
+    if (file.isFile()) {
+      this.load();
+    }
+  }
+
+  /**
+   * Return the validators of a resource.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   * @return the {@link Validator} or null if the resource wasn't fetched
+   *         before.
+   */
+  public Validator get(final String uri) {
+    return this.validators.get(uri);
+  }
+
+  /**
+   * Keep the validators of a fetched resource.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   * @param eTag
+   *          - the ETag or null.
+   * @param lastModified
+   *          - the modification time in milliseconds or 0 if it's unknown.
+   */
+  public void put(final String uri, final String eTag, final long lastModified) {
+    // an ETag which can't be written to the file is dropped
+    final String storedETag = eTag == null || eTag.indexOf(SEPARATOR) != -1 || eTag.indexOf('\n') != -1 ? null : eTag;
+    if (storedETag == null && lastModified <= 0) {
+      this.validators.remove(uri);
+    } else {
+      this.validators.put(uri, new Validator(storedETag, lastModified));
+    }
+  }
+
+  /**
+   * Forget the validators of a resource, so it's downloaded again on the next
+   * request.
+   *
+   * @param uri
+   *          - the URI of the resource.
+   */
+  public void remove(final String uri) {
+    this.validators.remove(uri);
+  }
+
+  /**
+   *
+   * @return the number of resources in the store.
+   */
+  public int size() {
+    return this.validators.size();
+  }
+
+  /**
+   * Save the store to its file. The file is replaced at once, a crash while
+   * saving keeps the former file.
+   *
+   * @throws ApplicationException
+   *           if the file can't be written.
+   */
+  public synchronized void save() throws ApplicationException {
+    if (this.file == null) {
+      return;
+    }
+    final File tempFile = new File(this.file.getPath() + ".tmp");
+    try {
+      final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), FILE_ENCODING));
+      try {
+        for (Map.Entry<String, Validator> entry : this.validators.entrySet()) {
+          final Validator validator = entry.getValue();
+          writer.write(entry.getKey());
+          writer.write(SEPARATOR);
+          writer.write(validator.eTag != null ? validator.eTag : "");
+          writer.write(SEPARATOR);
+          writer.write(Long.toString(validator.lastModified));
+          writer.newLine();
+        }
+      } finally {
+        writer.close();
+      }
+      Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while writing the validator store " + this.file + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
+
+  private void load() throws ApplicationException {
+    try {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), FILE_ENCODING));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final int eTagStart = line.indexOf(SEPARATOR);
+          final int timeStart = line.lastIndexOf(SEPARATOR);
+          if (eTagStart <= 0 || timeStart == eTagStart) {
+            // a broken line is skipped, the resource is fetched again
+            continue;
+          }
+          final String eTag = line.substring(eTagStart + 1, timeStart);
+          try {
+            this.put(line.substring(0, eTagStart), eTag.isEmpty() ? null : eTag, Long.parseLong(line.substring(timeStart + 1)));
+          } catch (NumberFormatException e) {
+            continue;
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while reading the validator store " + this.file + "  -- exception: " + e.getMessage() + "\n");
+    }
+  }
+
+  /**
+   * The validators of a resource.
+   */
+  public static final class Validator {
+    private final String eTag;
+    private final long lastModified;
+
+    private Validator(final String eTag, final long lastModified) {
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     *
+     * @return the ETag or null if the server didn't send one.
+     */
+    public String getETag() {
+      return this.eTag;
+    }
+
+    /**
+     *
+     * @return the modification time in milliseconds or 0 if it's unknown.
+     */
+    public long getLastModified() {
+      return this.lastModified;
+    }
+  }
+}
@@ -38,4 +38,35 @@ public interface IResourceReader {
    * @throws ApplicationException
    */
   URL getURI(final String uri) throws ApplicationException;
+
+  /**
+   * Get the modification time of a resource without reading it.
+   * 
+   * @param uri
+   *          a URI to a {@link File} or a {@link URL}
+   * @return the modification time in milliseconds or 0 if it's unknown, e.g.
+   *         for remote resources.
+   */
+  long getLastModified(final String uri);
+
+  /**
+   * Get the input stream for a URI if the resource was modified since it was
+   * read by this method the last time. HTTP resources are requested with
+   * If-None-Match and If-Modified-Since.
+   * 
+   * @param uri
+   *          - the URI given by the {@link Harvester}
+   * @return the {@link InputStream} or null if the resource wasn't modified.
+   * @throws ApplicationException
+   */
+  InputStream readIfModified(final String uri) throws ApplicationException;
+
+  /**
+   * Forget the modification state of a resource, e.g. if it couldn't be
+   * parsed. The next {@link #readIfModified(String)} returns the resource.
+   * 
+   * @param uri
+   *          - the URI given by the {@link Harvester}
+   */
+  void invalidate(final String uri);
 }
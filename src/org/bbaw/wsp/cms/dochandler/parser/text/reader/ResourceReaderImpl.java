@@ -4,7 +4,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 
 import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
 
@@ -17,6 +19,38 @@ import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
  * 
  */
 public class ResourceReaderImpl implements IResourceReader {
+  private final HttpValidatorStore validatorStore;
+
+  /**
+   * Create a new ResourceReaderImpl. The validators of
+   * {@link #readIfModified(String)} are kept in the heap only.
+   */
+  public ResourceReaderImpl() {
+    this(new HttpValidatorStore());
+  }
+
+  /**
+   * Create a new ResourceReaderImpl.
+   * 
+   * @param validatorStore
+   *          - the {@link HttpValidatorStore} of
+   *          {@link #readIfModified(String)}, e.g. a store which is saved
+   *          after each crawl.
+   */
+  public ResourceReaderImpl(final HttpValidatorStore validatorStore) {
+    if (validatorStore == null) {
+      throw new IllegalArgumentException("The value for the parameter validatorStore in ResourceReaderImpl mustn't be null.");
+    }
+    this.validatorStore = validatorStore;
+  }
+
+  /**
+   * 
+   * @return the {@link HttpValidatorStore} of {@link #readIfModified(String)}.
+   */
+  public HttpValidatorStore getValidatorStore() {
+    return this.validatorStore;
+  }
 
   /*
    * (non-Javadoc)
@@ -62,4 +96,76 @@ public class ResourceReaderImpl implements IResourceReader {
       throw new ApplicationException("The type of resource for this URI " + uri + " isn't supported: " + e.getMessage());
     }
   }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader#getLastModified
+   * (java.lang.String)
+   */
+  public long getLastModified(final String uri) {
+    if (uri.contains("http://")) {
+      // no request is sent just to get the modification time
+      return 0;
+    }
+    return new File(uri).lastModified();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader#readIfModified
+   * (java.lang.String)
+   */
+  public InputStream readIfModified(final String uri) throws ApplicationException {
+    final HttpValidatorStore.Validator validator = this.validatorStore.get(uri);
+    try {
+      if (uri.contains("http://")) {
+        final URLConnection conn = new URL(uri).openConnection();
+        if (!(conn instanceof HttpURLConnection)) {
+          return conn.getInputStream();
+        }
+        final HttpURLConnection httpConn = (HttpURLConnection) conn;
+        if (validator != null) {
+          if (validator.getETag() != null) {
+            httpConn.setRequestProperty("If-None-Match", validator.getETag());
+          }
+          if (validator.getLastModified() > 0) {
+            httpConn.setIfModifiedSince(validator.getLastModified());
+          }
+        }
+        if (httpConn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          httpConn.disconnect();
+          return null;
+        }
+        final InputStream in = httpConn.getInputStream();
+        this.validatorStore.put(uri, httpConn.getHeaderField("ETag"), httpConn.getLastModified());
+        return in;
+      } else {
+        final File file = new File(uri);
+        final long lastModified = file.lastModified();
+        if (validator != null && lastModified != 0 && validator.getLastModified() == lastModified) {
+          return null;
+        }
+        final InputStream in = new FileInputStream(file);
+        this.validatorStore.put(uri, null, lastModified);
+        return in;
+      }
+    } catch (IOException e) {
+      throw new ApplicationException("The type of resource for this URI " + uri + " isn't supported: " + e.getMessage());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * org.bbaw.wsp.cms.dochandler.parser.text.reader.IResourceReader#invalidate
+   * (java.lang.String)
+   */
+  public void invalidate(final String uri) {
+    this.validatorStore.remove(uri);
+  }
 }
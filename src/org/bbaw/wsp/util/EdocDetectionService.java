@@ -0,0 +1,222 @@
+package org.bbaw.wsp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This service checks if a resource belongs to an eDoc. An eDoc is represented
+ * by the folder structure: [year] / [eDocID] - index.html - /pdf/[eDoc.pdf]
+ *
+ * A resource is only probed if its parent folder is a pdf folder. The answer
+ * is cached per eDoc folder, so all files of an eDoc cost one probe: a lookup
+ * of the index.html on the file system or a HEAD request on the eDoc server.
+ * Positive and negative answers expire after their own time to live. The
+ * least recently used folders are removed if the cache is full.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public final class EdocDetectionService {
+  /**
+   * The default time to live of a positive answer in milliseconds.
+   */
+  public static final long DEFAULT_POSITIVE_TTL = 30 * 60 * 1000L;
+  /**
+   * The default time to live of a negative answer in milliseconds. It's short
+   * because an eDoc folder may be filled while it's harvested.
+   */
+  public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L;
+  /**
+   * The default maximum number of cached eDoc folders.
+   */
+  public static final int DEFAULT_CAPACITY = 16384;
+  private static final int PROBE_TIMEOUT = 10000;
+  private static final String PDF_FOLDER = "/pdf";
+  private static final String INDEX_FILE = "/index.html";
+
+  private static EdocDetectionService instance;
+
+  private final Map<String, CachedAnswer> entries;
+  private volatile long positiveTtl = DEFAULT_POSITIVE_TTL;
+  private volatile long negativeTtl = DEFAULT_NEGATIVE_TTL;
+  private long probes;
+
+  /**
+   * Return the only existing instance.
+   *
+   * @return the {@link EdocDetectionService}
+   */
+  public static synchronized EdocDetectionService getInstance() {
+    if (instance == null) {
+      instance = new EdocDetectionService(DEFAULT_CAPACITY);
+    }
+    return instance;
+  }
+
+  private EdocDetectionService(final int capacity) {
+    this.entries = new LinkedHashMap<String, CachedAnswer>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedAnswer> eldest) {
+        return this.size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Set the time to live of the cached answers.
+   *
+   * @param positiveTtl
+   *          - the time to live of a positive answer in milliseconds.
+   * @param negativeTtl
+   *          - the time to live of a negative answer in milliseconds.
+   * @throws IllegalArgumentException
+   *           if one of the values is negative.
+   */
+  public void setTimeToLive(final long positiveTtl, final long negativeTtl) {
+    if (positiveTtl < 0 || negativeTtl < 0) {
+      throw new IllegalArgumentException("The values for the parameters positiveTtl and negativeTtl in EdocDetectionService mustn't be negative.");
+    }
+    this.positiveTtl = positiveTtl;
+    this.negativeTtl = negativeTtl;
+  }
+
+  /**
+   * Check if the resource is an eDoc.
+   *
+   * @param uri
+   *          - the resource's URI: a path on the file system or an HTTP URL.
+   * @return true if the resource is a file in the pdf folder of an (KOBV) eDoc.
+   */
+  public boolean isEDoc(final String uri) {
+    final String folder = getEdocFolder(uri);
+    if (folder == null) {
+      return false;
+    }
+    final long now = System.currentTimeMillis();
+    synchronized (this) {
+      final CachedAnswer entry = this.entries.get(folder);
+      if (entry != null && entry.expires > now) {
+        return entry.isEDoc;
+      }
+    }
+    // the probe isn't done within the lock, another folder mustn't wait for a
+    // slow server
+    final boolean isEDoc = probe(folder);
+    this.register(folder, isEDoc, now);
+    return isEDoc;
+  }
+
+  /**
+   * Register the answer for an eDoc folder which is known by other means, e.g.
+   * by a harvester which listed the folder.
+   *
+   * @param uri
+   *          - the URI of the eDoc folder, its index.html or a file of its pdf
+   *          folder.
+   * @param isEDoc
+   *          - true if the folder is an eDoc.
+   */
+  public void register(final String uri, final boolean isEDoc) {
+    if (uri == null) {
+      throw new IllegalArgumentException("The value for the parameter uri in EdocDetectionService.register() mustn't be null.");
+    }
+    String folder = getEdocFolder(uri);
+    if (folder == null) {
+      folder = normalize(uri);
+      if (folder.endsWith(INDEX_FILE)) {
+        folder = folder.substring(0, folder.length() - INDEX_FILE.length());
+      } else if (folder.endsWith("/")) {
+        folder = folder.substring(0, folder.length() - 1);
+      }
+    }
+    this.register(folder, isEDoc, System.currentTimeMillis());
+  }
+
+  private synchronized void register(final String folder, final boolean isEDoc, final long now) {
+    this.entries.put(folder, new CachedAnswer(isEDoc, now + (isEDoc ? this.positiveTtl : this.negativeTtl)));
+  }
+
+  /**
+   * Remove all cached answers.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+  }
+
+  /**
+   *
+   * @return the number of probes on the file system or the eDoc server so far.
+   */
+  public synchronized long getProbeCount() {
+    return this.probes;
+  }
+
+  /*
+   * Return the eDoc folder of a file in a pdf folder or null.
+   */
+  private static String getEdocFolder(final String uri) {
+    if (uri == null) {
+      return null;
+    }
+    final String normalizedUri = normalize(uri);
+    final int fileStart = normalizedUri.lastIndexOf('/');
+    if (fileStart == -1 || !normalizedUri.substring(0, fileStart).endsWith(PDF_FOLDER)) {
+      return null;
+    }
+    return normalizedUri.substring(0, fileStart - PDF_FOLDER.length());
+  }
+
+  private static String normalize(final String uri) {
+    return uri.replace('\\', '/');
+  }
+
+  private boolean probe(final String folder) {
+    synchronized (this) {
+      this.probes++;
+    }
+    if (!isRemote(folder)) {
+      return new File(folder + INDEX_FILE).isFile();
+    }
+    try {
+      final URLConnection conn = new URL(folder + INDEX_FILE).openConnection();
+      conn.setConnectTimeout(PROBE_TIMEOUT);
+      conn.setReadTimeout(PROBE_TIMEOUT);
+      if (!(conn instanceof HttpURLConnection)) {
+        return false;
+      }
+      final HttpURLConnection httpConn = (HttpURLConnection) conn;
+      httpConn.setRequestMethod("HEAD");
+      try {
+        return httpConn.getResponseCode() == HttpURLConnection.HTTP_OK;
+      } finally {
+        httpConn.disconnect();
+      }
+    } catch (MalformedURLException e) {
+      return false;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static boolean isRemote(final String uri) {
+    return uri.startsWith("http://") || uri.startsWith("https://");
+  }
+
+  private static class CachedAnswer {
+    private final boolean isEDoc;
+    private final long expires;
+
+    CachedAnswer(final boolean isEDoc, final long expires) {
+      this.isEDoc = isEDoc;
+      this.expires = expires;
+    }
+  }
+}
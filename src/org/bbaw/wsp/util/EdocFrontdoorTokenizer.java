@@ -0,0 +1,498 @@
+package org.bbaw.wsp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bbaw.wsp.cms.dochandler.parser.metadata.MetadataRecord;
+
+/**
+ * This class fills a {@link MetadataRecord} from the frontdoor page
+ * (index.html) of an eDoc in a single pass. The page is read as a stream of
+ * tags and text, so it's never kept as one String. The META tags and the
+ * frontdoor table rows are dispatched to the fields by hash tables.
+ *
+ * An instance isn't thread-safe, use the static methods.
+ *
+ * @author Sascha Feldmann (wsp-shk1)
+ *
+ */
+public final class EdocFrontdoorTokenizer {
+  private static final int BUFFER_SIZE = 8192;
+
+  /*
+   * The fields of the META tags.
+   */
+  private enum MetaField {
+    CREATION_DATE, TITLE, CREATOR, SWD, DESCRIPTION, IDENTIFIER
+  }
+
+  /*
+   * The fields of the frontdoor table. The key is the label of the row
+   * without the colon and the remark in brackets.
+   */
+  private enum RowField {
+    PDF_FORMAT("pdf-Format"), SUBJECT("Freie Schlagw\u00f6rter"), DDC("DDC-Sachgruppe"), LANGUAGE("Sprache"), DOCUMENT_TYPE("Dokumentart"), PUBLISHING_DATE("Publikationsdatum"), ISBN("ISBN"), INSTITUTE("Institut"), COLLECTION("Collection");
+
+    private final String label;
+
+    private RowField(final String label) {
+      this.label = label;
+    }
+  }
+
+  private static final Map<String, MetaField> META_FIELDS;
+  private static final Map<String, RowField> ROW_FIELDS;
+
+  static {
+    Map<String, MetaField> metaFields = new HashMap<String, MetaField>();
+    metaFields.put("DC.Date.Creation_of_intellectual_content", MetaField.CREATION_DATE);
+    metaFields.put("DC.Title", MetaField.TITLE);
+    metaFields.put("DC.Creator", MetaField.CREATOR);
+    metaFields.put("DC.Subject", MetaField.SWD);
+    metaFields.put("DC.Description", MetaField.DESCRIPTION);
+    metaFields.put("DC.Identifier", MetaField.IDENTIFIER);
+    META_FIELDS = Collections.unmodifiableMap(metaFields);
+
+    Map<String, RowField> rowFields = new HashMap<String, RowField>();
+    for (RowField field : RowField.values()) {
+      rowFields.put(field.label, field);
+    }
+    ROW_FIELDS = Collections.unmodifiableMap(rowFields);
+  }
+
+  private final Reader reader;
+  private final MetadataRecord mdRecord;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  private final Map<String, String> attributes = new HashMap<String, String>();
+  private final StringBuilder name = new StringBuilder();
+  private final StringBuilder value = new StringBuilder();
+  private final StringBuilder creators = new StringBuilder();
+
+  // state of the frontdoor table
+  private boolean inCell;
+  private boolean cellHasBold;
+  private boolean inAnchor;
+  private final StringBuilder cellText = new StringBuilder();
+  private final StringBuilder anchorText = new StringBuilder();
+  private String cellHref;
+  private String cellAnchorText;
+  private String pendingKey;
+  private String pendingHref;
+
+  private EdocFrontdoorTokenizer(final Reader reader, final MetadataRecord mdRecord) {
+    this.reader = reader;
+    this.mdRecord = mdRecord;
+  }
+
+  /**
+   * Fill a {@link MetadataRecord} from a frontdoor page.
+   *
+   * @param reader
+   *          - the {@link Reader} of the index.html. It isn't closed.
+   * @param mdRecord
+   *          - the {@link MetadataRecord} to fill
+   * @return the complete {@link MetadataRecord}
+   * @throws IOException
+   *           if the reader fails.
+   */
+  public static MetadataRecord parse(final Reader reader, final MetadataRecord mdRecord) throws IOException {
+    if (reader == null) {
+      throw new IllegalArgumentException("The value for the parameter reader in EdocFrontdoorTokenizer mustn't be null.");
+    }
+    if (mdRecord == null) {
+      throw new IllegalArgumentException("The value for the parameter mdRecord in EdocFrontdoorTokenizer mustn't be null.");
+    }
+    new EdocFrontdoorTokenizer(reader, mdRecord).run();
+    return mdRecord;
+  }
+
+  /**
+   * Fill a {@link MetadataRecord} from a frontdoor page which was read before.
+   * The bytes are decoded by the platform's default charset.
+   *
+   * @param index
+   *          - the content of the index.html.
+   * @param mdRecord
+   *          - the {@link MetadataRecord} to fill
+   * @return the complete {@link MetadataRecord}
+   */
+  public static MetadataRecord parse(final byte[] index, final MetadataRecord mdRecord) {
+    try {
+      return parse(new InputStreamReader(new ByteArrayInputStream(index), Charset.defaultCharset()), mdRecord);
+    } catch (IOException e) {
+      // a byte array doesn't fail
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void run() throws IOException {
+    int c;
+    while ((c = this.read()) != -1) {
+      if (c == '<') {
+        this.readTag();
+      } else if (this.inCell) {
+        appendText(this.cellText, (char) c);
+        if (this.inAnchor) {
+          appendText(this.anchorText, (char) c);
+        }
+      }
+    }
+  }
+
+  /*
+   * Whitespace is collapsed to one blank.
+   */
+  private static void appendText(final StringBuilder text, final char c) {
+    if (Character.isWhitespace(c)) {
+      if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+        text.append(' ');
+      }
+    } else {
+      text.append(c);
+    }
+  }
+
+  private void readTag() throws IOException {
+    int c = this.read();
+    if (c == '!') {
+      this.skipDeclaration();
+      return;
+    }
+    final boolean endTag = c == '/';
+    if (endTag) {
+      c = this.read();
+    }
+    this.name.setLength(0);
+    while (c != -1 && (Character.isLetterOrDigit(c))) {
+      this.name.append(Character.toLowerCase((char) c));
+      c = this.read();
+    }
+    final String tagName = this.name.toString();
+    if (endTag) {
+      this.skipTo(c, '>');
+      this.handleEndTag(tagName);
+      return;
+    }
+    if (tagName.equals("meta") || tagName.equals("td") || tagName.equals("a")) {
+      this.readAttributes(c);
+      this.handleStartTag(tagName);
+    } else {
+      this.skipTo(c, '>');
+      if (tagName.equals("b") && this.inCell) {
+        this.cellHasBold = true;
+      } else if (tagName.equals("script") || tagName.equals("style")) {
+        this.skipRawText(tagName);
+      }
+    }
+  }
+
+  private void handleStartTag(final String tagName) {
+    if (tagName.equals("meta")) {
+      final String metaName = this.attributes.get("name");
+      final String content = this.attributes.get("content");
+      if (metaName != null && content != null) {
+        final MetaField field = META_FIELDS.get(metaName);
+        if (field != null) {
+          this.setMetaField(field, content);
+        }
+      }
+    } else if (tagName.equals("td")) {
+      if ("frontdoor".equalsIgnoreCase(this.attributes.get("class"))) {
+        this.inCell = true;
+        this.cellHasBold = false;
+        this.inAnchor = false;
+        this.cellText.setLength(0);
+        this.cellHref = null;
+        this.cellAnchorText = null;
+      }
+    } else if (tagName.equals("a") && this.inCell) {
+      if (this.cellHref == null) {
+        this.cellHref = this.attributes.get("href");
+      }
+      this.inAnchor = true;
+      this.anchorText.setLength(0);
+    }
+  }
+
+  private void handleEndTag(final String tagName) {
+    if (!this.inCell) {
+      return;
+    }
+    if (tagName.equals("a") && this.inAnchor) {
+      this.inAnchor = false;
+      if (this.cellAnchorText == null) {
+        this.cellAnchorText = this.anchorText.toString().trim();
+      }
+    } else if (tagName.equals("td")) {
+      this.inCell = false;
+      if (this.cellHasBold) {
+        // the label of a row, the value follows in the next cell
+        this.pendingKey = this.cellText.toString().trim();
+        this.pendingHref = this.cellHref;
+      } else if (this.pendingKey != null) {
+        final RowField field = getRowField(this.pendingKey);
+        if (field != null) {
+          this.setRowField(field, this.cellText.toString().trim());
+        }
+        this.pendingKey = null;
+        this.pendingHref = null;
+      }
+    }
+  }
+
+  /*
+   * The label is looked up without the colon and the remark in brackets, e.g.
+   * "Freie Schlagwörter (Deutsch):". Other labels are compared by their
+   * content.
+   */
+  private static RowField getRowField(final String key) {
+    int end = key.length();
+    final int colon = key.indexOf(':');
+    if (colon != -1) {
+      end = colon;
+    }
+    final int bracket = key.indexOf('(');
+    if (bracket != -1 && bracket < end) {
+      end = bracket;
+    }
+    final RowField field = ROW_FIELDS.get(key.substring(0, end).trim());
+    if (field != null) {
+      return field;
+    }
+    for (RowField rowField : RowField.values()) {
+      if (key.contains(rowField.label)) {
+        return rowField;
+      }
+    }
+    return null;
+  }
+
+  private void setMetaField(final MetaField field, final String content) {
+    switch (field) {
+    case CREATION_DATE:
+      try {
+        Calendar cal = new GregorianCalendar();
+        cal.clear();
+        cal.set(Calendar.YEAR, Integer.parseInt(content.trim()));
+        this.mdRecord.setCreationDate(cal.getTime());
+      } catch (NumberFormatException e) {
+        // no year
+      }
+      break;
+    case TITLE:
+      this.mdRecord.setTitle(content);
+      break;
+    case CREATOR:
+      // more than one creator
+      if (this.creators.length() > 0) {
+        this.creators.append(" ; ");
+      }
+      this.creators.append(content);
+      this.mdRecord.setCreator(this.creators.toString());
+      break;
+    case SWD:
+      // DC.Subject follows the Schlagwortnormdatei
+      this.mdRecord.setSwd(content);
+      break;
+    case DESCRIPTION:
+      this.mdRecord.setDescription(content);
+      break;
+    case IDENTIFIER:
+      if (content.contains("http://")) {
+        this.mdRecord.setUri(content);
+      } else if (content.contains("urn:")) {
+        this.mdRecord.setUrn(content);
+      }
+      break;
+    default:
+      break;
+    }
+  }
+
+  private void setRowField(final RowField field, final String text) {
+    switch (field) {
+    case PDF_FORMAT:
+      if (this.pendingHref != null) {
+        this.mdRecord.setRealDocUrl(this.pendingHref);
+      }
+      break;
+    case SUBJECT:
+      this.mdRecord.setSubject(text);
+      break;
+    case DDC:
+      this.mdRecord.setDdc(text);
+      break;
+    case LANGUAGE:
+      this.mdRecord.setLanguage(text);
+      break;
+    case DOCUMENT_TYPE:
+      this.mdRecord.setDocumentType(text);
+      break;
+    case PUBLISHING_DATE:
+      // e.g. 07.06.2012
+      final int firstDot = text.indexOf('.');
+      final int lastDot = text.lastIndexOf('.');
+      if (firstDot != -1 && lastDot > firstDot) {
+        try {
+          final int day = Integer.parseInt(text.substring(0, firstDot).trim());
+          final int month = Integer.parseInt(text.substring(firstDot + 1, lastDot).trim());
+          final int year = Integer.parseInt(text.substring(lastDot + 1).trim());
+          Calendar cal = new GregorianCalendar();
+          cal.clear();
+          cal.set(year, month - 1, day);
+          this.mdRecord.setPublishingDate(cal.getTime());
+        } catch (NumberFormatException e) {
+          // no date
+        }
+      }
+      break;
+    case ISBN:
+      this.mdRecord.setIsbn(text);
+      break;
+    case INSTITUTE:
+      this.mdRecord.setPublisher(text);
+      break;
+    case COLLECTION:
+      this.mdRecord.setCollectionNames(this.cellAnchorText != null ? this.cellAnchorText : text);
+      break;
+    default:
+      break;
+    }
+  }
+
+  /*
+   * Read the attributes of a start tag up to the closing '>'. The names are
+   * lower case.
+   */
+  private void readAttributes(final int first) throws IOException {
+    this.attributes.clear();
+    int c = first;
+    while (true) {
+      while (c != -1 && Character.isWhitespace(c)) {
+        c = this.read();
+      }
+      if (c == -1 || c == '>') {
+        return;
+      }
+      if (c == '/') {
+        c = this.read();
+        continue;
+      }
+      this.name.setLength(0);
+      while (c != -1 && c != '=' && c != '>' && !Character.isWhitespace(c)) {
+        this.name.append(Character.toLowerCase((char) c));
+        c = this.read();
+      }
+      while (c != -1 && Character.isWhitespace(c)) {
+        c = this.read();
+      }
+      this.value.setLength(0);
+      if (c == '=') {
+        c = this.read();
+        while (c != -1 && Character.isWhitespace(c)) {
+          c = this.read();
+        }
+        if (c == '"' || c == '\'') {
+          final int quote = c;
+          c = this.read();
+          while (c != -1 && c != quote) {
+            this.value.append((char) c);
+            c = this.read();
+          }
+          c = this.read();
+        } else {
+          while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+            this.value.append((char) c);
+            c = this.read();
+          }
+        }
+      }
+      this.attributes.put(this.name.toString(), this.value.toString());
+    }
+  }
+
+  /*
+   * Skip a tag up to the closing '>', quoted values may contain '>'.
+   */
+  private void skipTo(final int first, final char end) throws IOException {
+    int c = first;
+    int quote = -1;
+    while (c != -1) {
+      if (quote != -1) {
+        if (c == quote) {
+          quote = -1;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == end) {
+        return;
+      }
+      c = this.read();
+    }
+  }
+
+  /*
+   * Skip a comment or a DOCTYPE declaration.
+   */
+  private void skipDeclaration() throws IOException {
+    int c = this.read();
+    if (c == '-') {
+      c = this.read();
+      if (c == '-') {
+        // comment: skip up to "-->"
+        int dashes = 0;
+        while ((c = this.read()) != -1) {
+          if (c == '>' && dashes >= 2) {
+            return;
+          }
+          dashes = c == '-' ? dashes + 1 : 0;
+        }
+        return;
+      }
+    }
+    this.skipTo(c, '>');
+  }
+
+  /*
+   * Skip the content of a script or style element, it may contain '<'.
+   */
+  private void skipRawText(final String tagName) throws IOException {
+    final String endTag = "</" + tagName;
+    int matched = 0;
+    int c;
+    while ((c = this.read()) != -1) {
+      if (Character.toLowerCase((char) c) == endTag.charAt(matched)) {
+        matched++;
+        if (matched == endTag.length()) {
+          this.skipTo(this.read(), '>');
+          return;
+        }
+      } else {
+        matched = c == '<' ? 1 : 0;
+      }
+    }
+  }
+
+  private int read() throws IOException {
+    if (this.position == this.limit) {
+      this.limit = this.reader.read(this.buffer, 0, this.buffer.length);
+      this.position = 0;
+      if (this.limit <= 0) {
+        this.limit = 0;
+        return -1;
+      }
+    }
+    return this.buffer[this.position++];
+  }
+}
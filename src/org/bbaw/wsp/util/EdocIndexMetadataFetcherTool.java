@@ -3,15 +3,11 @@
  */
 package org.bbaw.wsp.util;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.Scanner;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,10 +28,11 @@ import de.mpg.mpiwg.berlin.mpdl.exception.ApplicationException;
  */
 public class EdocIndexMetadataFetcherTool {
   private static IResourceReader reader = new ResourceReaderImpl();
+  private static final Pattern META_PATTERN = Pattern.compile("(?i)<META NAME=\"(.*?)\" CONTENT=\"(.*?)\">(?i)");
 
   /**
-   * This class reads from an URL and fetches the DC tags directly (with String
-   * operations).
+   * This class reads from an URL and fetches the DC tags directly in a single
+   * pass over the stream, see {@link EdocFrontdoorTokenizer}.
    * 
    * It's designed for the eDoc server.
    * 
@@ -48,107 +45,72 @@ public class EdocIndexMetadataFetcherTool {
    *           if the index.html cannot get read.
    */
   public static MetadataRecord fetchHtmlDirectly(final String srcUrl, final MetadataRecord mdRecord) throws ApplicationException {
-    InputStream in;
+    final InputStream in = reader.read(srcUrl);
     try {
-      in = reader.read(srcUrl);
-      Scanner scanner = new Scanner(in);
-      scanner.useDelimiter("\n"); // delimiter via line break
-      StringBuilder builder = new StringBuilder();
-      while (scanner.hasNext()) {
-        builder.append(scanner.next()); // concat to one String
-      }
-      String line = builder.toString();
-      StringBuilder creatorBuilder = new StringBuilder(); // fix: more than one
-                                                          // creator
-      Pattern p = Pattern.compile("(?i)<META NAME=\"(.*?)\" CONTENT=\"(.*?)\">(?i)"); // meta
-      // pattern
-      for (Matcher m = p.matcher(line); m.find();) {
-        String tag = m.group(1);
-        String content = m.group(2);
-        if (tag.equals("DC.Date.Creation_of_intellectual_content")) { // creation
-                                                                      // date
-          Calendar cal = new GregorianCalendar();
-          cal.set(Calendar.YEAR, Integer.parseInt(content));
-          cal.set(Calendar.DAY_OF_YEAR, 1);
-          cal.set(Calendar.HOUR, 0);
-          cal.set(Calendar.MINUTE, 0);
-          cal.set(Calendar.SECOND, 0);
-          cal.set(Calendar.MILLISECOND, 0);
-          mdRecord.setCreationDate(cal.getTime());
-        } else if (tag.equals("DC.Title")) {
-          mdRecord.setTitle(content);
-        } else if (tag.equals("DC.Creator")) {
-          if (creatorBuilder.toString().length() == 0) {
-            creatorBuilder.append(content);
-          } else {
-            creatorBuilder.append(" ; " + content);
-          }
-          mdRecord.setCreator(creatorBuilder.toString());
-        } else if (tag.equals("DC.Subject")) {
-          mdRecord.setSwd(content); // DC.Subject follows the
-                                    // Schlagwortnormdatei
-        } else if (tag.equals("DC.Description")) {
-          mdRecord.setDescription(content);
-        } else if (tag.equals("DC.Identifier")) {
-          if (content.contains("http://")) {
-            mdRecord.setUri(content);
-          } else if (content.contains("urn:")) {
-            mdRecord.setUrn(content);
-          }
-        }
+      return EdocFrontdoorTokenizer.parse(new InputStreamReader(in, Charset.defaultCharset()), mdRecord);
+    } catch (IOException e) {
+      throw new ApplicationException("Problem while parsing " + srcUrl + " for DC tags " + e.getMessage());
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // ignore
       }
+    }
+  }
 
-      Pattern p2 = Pattern.compile("(?i)<TD class=\"frontdoor\" valign=\"top\"><B>(.*?)</B></TD>.*?<TD class=\"frontdoor\" valign=\"top\">(.*?)</TD><");
-      for (Matcher m = p2.matcher(line); m.find();) {
-        String key = m.group(1);
-        String value = m.group(2).trim();
-        if (key.contains("pdf-Format")) {
-          Pattern pLink = Pattern.compile("(?i)<a href=\"(.*?)(\".*?)\">.*?</a>");
-          Matcher mLink = pLink.matcher(key);
-          mLink.find();
-          mdRecord.setRealDocUrl(mLink.group(1));
-          System.out.println(mLink.group(1));
-        } else if (key.contains("Freie Schlagwörter")) {
-          mdRecord.setSubject(value);
-        } else if (key.contains("DDC-Sachgruppe")) {
-          mdRecord.setDdc(value);
-        } else if (key.contains("Sprache")) {
-          mdRecord.setLanguage(value);
-        } else if (key.contains("Dokumentart")) {
-          mdRecord.setDocumentType(value);
-        } else if (key.contains("Publikationsdatum")) {
-          final int day = Integer.parseInt(value.substring(0, value.indexOf(".")));
-          final int month = Integer.parseInt(value.substring(value.indexOf(".") + 1, value.lastIndexOf(".")));
-          final int year = Integer.parseInt(value.substring(value.lastIndexOf(".") + 1));
-
-          Calendar cal = new GregorianCalendar();
-          cal.set(year, month, day);
-          mdRecord.setPublishingDate(cal.getTime());
-        } else if (key.contains("ISBN")) {
-          mdRecord.setIsbn(value);
-        } else if (key.contains("Institut")) {
-          mdRecord.setPublisher(value);
-        } else if (key.contains("Collection")) {
-          Pattern pColl = Pattern.compile("(?i)<a.*?>(.*?)</a>");
-          Matcher mColl = pColl.matcher(value);
-          mColl.find();
-          String collections = mColl.group(1);
-
-          mdRecord.setCollectionNames(collections);
-        }
-      }
-      // Bugfix: Institut
-      Pattern p3 = Pattern.compile("(?i)<TD class=\"frontdoor\" valign=\"top\"><B>Institut:</B></TD>.*?<TD class=\"frontdoor\" valign=\"top\">(.*?)</TD><");
-      for (Matcher m = p3.matcher(line); m.find();) {
-        mdRecord.setPublisher(m.group(1));
+  /**
+   * Read the whole index.html into a buffer, so it can be handed to the
+   * metadata extraction and the fulltext parser without a second request.
+   * 
+   * @param srcUrl
+   *          - the basic Url as String
+   * @return the content of the index.html.
+   * @throws ApplicationException
+   *           if the index.html cannot get read.
+   */
+  public static byte[] fetchIndex(final String srcUrl) throws ApplicationException {
+    final InputStream in = reader.read(srcUrl);
+    try {
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        content.write(buffer, 0, count);
       }
-
-      in.close();
-      return mdRecord;
+      return content.toByteArray();
     } catch (IOException e) {
-      throw new ApplicationException("Problem while parsing " + srcUrl + " for DC tags " + e.getMessage());
+      throw new ApplicationException("Problem while reading " + srcUrl + " -- exception: " + e.getMessage());
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // ignore
+      }
     }
+  }
 
+  /**
+   * Fetch the DC tags from an index.html which was read before, see
+   * {@link #fetchIndex(String)}.
+   * 
+   * @param srcUrl
+   *          - the basic Url as String
+   * @param index
+   *          - the content of the index.html.
+   * @param mdRecord
+   *          - the {@link MetadataRecord} to fill
+   * @return the complete {@link MetadataRecord}
+   */
+  public static MetadataRecord fetchHtmlDirectly(final String srcUrl, final byte[] index, final MetadataRecord mdRecord) {
+    return EdocFrontdoorTokenizer.parse(index, mdRecord);
+  }
+
+  /*
+   * The index.html is concatenated to one String without line breaks.
+   */
+  private static String toLine(final byte[] content) {
+    return new String(content, Charset.defaultCharset()).replace("\n", "");
   }
 
   /**
@@ -161,23 +123,24 @@ public class EdocIndexMetadataFetcherTool {
    *           if the stream couldn't get opened.
    */
   public static boolean isEDocIndex(String uri) throws ApplicationException {
-    InputStream in = reader.read(uri);
+    return isEDocIndex(fetchIndex(uri));
+  }
 
-    if (in != null) {
-      Scanner scanner = new Scanner(in);
-      scanner.useDelimiter("\n");
-      StringBuilder builder = new StringBuilder();
-      while (scanner.hasNext()) {
-        builder.append(scanner.next());
-      }
-      String content = builder.toString();
-      Pattern p = Pattern.compile("(?i)<META NAME=\"(.*?)\" CONTENT=\"(.*?)\">(?i)");
-      for (Matcher m = p.matcher(content); m.find();) {
-        String tag = m.group(1);
-        String value = m.group(2);
-        if (tag.equals("DC.Identifier") && value.contains("edoc.bbaw.de/")) {
-          return true;
-        }
+  /**
+   * Check if an index.html which was read before belongs to an eDoc, see
+   * {@link #fetchIndex(String)}.
+   * 
+   * @param index
+   *          - the content of the index.html.
+   * @return true if the index.html file belongs to an eDoc.
+   */
+  public static boolean isEDocIndex(final byte[] index) {
+    String content = toLine(index);
+    for (Matcher m = META_PATTERN.matcher(content); m.find();) {
+      String tag = m.group(1);
+      String value = m.group(2);
+      if (tag.equals("DC.Identifier") && value.contains("edoc.bbaw.de/")) {
+        return true;
       }
     }
     return false;
@@ -191,30 +154,6 @@ public class EdocIndexMetadataFetcherTool {
    * @return true if the resource is an (KOBV) eDoc.
    */
   public static boolean isEDoc(String uri) {
-    // test local file system
-    File f = new File(uri);
-
-    if (f.getParentFile().getName().equals("pdf") && new File(f.getParentFile().getParentFile(), "index.html").exists()) {
-      return true;
-    } else { // test HTTP
-      try {
-        URL url = new URL(uri);
-        int pos = url.toExternalForm().lastIndexOf("/pdf");
-        if (pos != -1) {
-          String newUrl = url.toExternalForm().substring(0, pos) + "/index.html";
-
-          URL indexUrl = new URL(newUrl);
-          @SuppressWarnings("unused")
-          URLConnection conn = indexUrl.openConnection();
-
-          return true;
-        }
-        return false;
-      } catch (MalformedURLException e) {
-        return false;
-      } catch (IOException e) {
-        return false;
-      }
-    }
+    return EdocDetectionService.getInstance().isEDoc(uri);
   }
 }